@@ -28,19 +28,28 @@
 var API = (function($) {
   'use strict';
 
+  function getAtmsParams(latitude, longitude, distanceUnit, postalCode,
+    country, pageLength, pageOffset) {
+
+    return {
+      latitude: latitude,
+      longitude: longitude,
+      distanceUnit: distanceUnit,
+      postalCode: postalCode,
+      country: country,
+      pageOffset: pageOffset,
+      pageLength: pageLength,
+    };
+  }
+
   return {
+    getAtmsParams: getAtmsParams,
+
     getAtms: function getAtms(latitude, longitude, distanceUnit, postalCode,
       country, pageLength, pageOffset) {
 
-      var params = {
-        latitude: latitude,
-        longitude: longitude,
-        distanceUnit: distanceUnit,
-        postalCode: postalCode,
-        country: country,
-        pageOffset: pageOffset,
-        pageLength: pageLength,
-      };
+      var params = getAtmsParams(latitude, longitude, distanceUnit, postalCode,
+        country, pageLength, pageOffset);
 
       return $.getJSON('atms', params);
     }
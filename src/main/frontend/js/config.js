@@ -35,7 +35,11 @@ var AppConfig = (function(navigator) {
     country: 'USA',
     defaultLocation: {lat: 40.742859, lng: -74.000284}, // default to New York
     zoomLevel: 19,
-    distanceUnit: language === 'en-US' ? 'MILE' : 'KILOMETER'
+    distanceUnit: language === 'en-US' ? 'MILE' : 'KILOMETER',
+    debounceDelay: 300, // milliseconds to wait after the map stops moving before fetching
+    areaGridSize: 0.01, // degrees, map centers are snapped to this grid when fetching
+    cacheSize: 50, // number of fetched areas kept in memory
+    maxRenderedAtms: 200 // number of ATMs kept in the list and on the map
   };
 })(window.navigator);
 
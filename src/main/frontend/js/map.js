@@ -30,7 +30,9 @@ var Maps = (function() {
 
   return function(domElem, zoom, center, mapLoadedCallback) {
     var currentLocationMarker = null;
+    // one entry per ATM, markers are only attached to entries inside the viewport
     var markers = [];
+    var markerPool = [];
     var markersBounds = new google.maps.LatLngBounds();
     var hasControls = false;
 
@@ -44,6 +46,53 @@ var Maps = (function() {
       google.maps.event.addListenerOnce(map, 'idle', mapLoadedCallback);
     }
 
+    function isVisible(position) {
+      var bounds = map.getBounds();
+      return !bounds || bounds.contains(position);
+    }
+
+    function showMarker(entry) {
+      // reuse a marker recycled from outside the viewport before creating a new one
+      var marker = markerPool.pop();
+      if (marker) {
+        marker.setPosition(entry.position);
+        marker.setMap(map);
+      } else {
+        marker = new google.maps.Marker({
+          position: entry.position,
+          map: map,
+        });
+      }
+      entry.marker = marker;
+      entry.listener = marker.addListener('click', entry.clickCallback);
+    }
+
+    function hideMarker(entry) {
+      google.maps.event.removeListener(entry.listener);
+      entry.marker.setMap(null);
+      markerPool.push(entry.marker);
+      entry.marker = null;
+      entry.listener = null;
+    }
+
+    function updateMarkersBounds() {
+      markersBounds = new google.maps.LatLngBounds();
+      markers.forEach(function(entry) {
+        markersBounds = markersBounds.extend(entry.position);
+      });
+    }
+
+    google.maps.event.addListener(map, 'idle', function() {
+      markers.forEach(function(entry) {
+        var visible = isVisible(entry.position);
+        if (visible && !entry.marker) {
+          showMarker(entry);
+        } else if (!visible && entry.marker) {
+          hideMarker(entry);
+        }
+      });
+    });
+
     return {
       setCurrentLocationMarker: function(position) {
         currentLocationMarker = new google.maps.Marker({
@@ -55,13 +104,31 @@ var Maps = (function() {
       },
 
       addMarker: function(position, clickCallback) {
-        var marker = new google.maps.Marker({
+        var entry = {
           position: position,
-          map: map,
-        });
-        marker.addListener('click', clickCallback);
-        markers.push(marker);
+          clickCallback: clickCallback,
+          marker: null,
+          listener: null
+        };
+        if (isVisible(position)) {
+          showMarker(entry);
+        }
+        markers.push(entry);
         markersBounds = markersBounds.extend(position);
+        return entry;
+      },
+
+      // detaches the marker of an entry returned by addMarker and forgets the entry
+      removeMarker: function(entry) {
+        var index = markers.indexOf(entry);
+        if (index < 0) {
+          return;
+        }
+        if (entry.marker) {
+          hideMarker(entry);
+        }
+        markers.splice(index, 1);
+        updateMarkersBounds();
       },
 
       panTo: function(position) {
@@ -75,7 +142,7 @@ var Maps = (function() {
             lng: map.getCenter().lng()
           };
           if (!markersBounds.contains(center)) {
-            callback();
+            callback(center);
           }
         });
       },
@@ -29,7 +29,9 @@ var Presenter = (function($, navigator, API) {
   'use strict';
 
   return function(view, config) {
-    var loadingInProgress = false, maxItemsReached = false;
+    var loadingInProgress = false;
+    var pendingLocation = null;
+    var debounceTimer = null;
 
     var currentLocation = config.defaultLocation;
 
@@ -38,44 +40,78 @@ var Presenter = (function($, navigator, API) {
     var distanceUnit = config.distanceUnit;
     var radius = config.radius;
 
+    // delay before fetching once the map stops moving, and grid (in degrees)
+    // map centers are snapped to so that nearby areas share cache entries
+    var debounceDelay = config.debounceDelay !== undefined ? config.debounceDelay : 300;
+    var areaGridSize = config.areaGridSize || 0.01;
+    var cache = new LruCache(config.cacheSize || 50);
+
     function init() {
       view.onMapInitialized(onMapInitialized);
     }
 
     function onMapInitialized() {
-      fetchAtms();
+      fetchAtms(currentLocation);
       view.renderCurrentLocation(currentLocation);
       view.addCenterChangedHandler(onCenterChanged);
     }
 
-    function onCenterChanged() {
-      fetchAtms();
+    function onCenterChanged(center) {
+      clearTimeout(debounceTimer);
+      debounceTimer = setTimeout(function() {
+        fetchAtms(center ? snapToGrid(center) : currentLocation);
+      }, debounceDelay);
+    }
+
+    function snapToGrid(location) {
+      return {
+        lat: parseFloat((Math.round(location.lat / areaGridSize) * areaGridSize).toFixed(5)),
+        lng: parseFloat((Math.round(location.lng / areaGridSize) * areaGridSize).toFixed(5))
+      };
+    }
+
+    function renderAtms(data) {
+      $.each(data.atm, function(index, atm) {
+        view.renderAtm(atm);
+      });
     }
 
-    function fetchAtms() {
-      if (loadingInProgress || maxItemsReached) {
+    function fetchAtms(location) {
+      var params = API.getAtmsParams(location.lat, location.lng,
+        config.distanceUnit, config.postalCode, config.country, pageLength,
+        pageOffset);
+      var key = $.param(params);
+
+      var cached = cache.get(key);
+      if (cached) {
+        renderAtms(cached);
+        return;
+      }
+
+      if (loadingInProgress) {
+        // only the latest area is worth fetching once the current request completes
+        pendingLocation = location;
         return;
       }
       loadingInProgress = true;
 
-      var promise = API.getAtms(currentLocation.lat, currentLocation.lng,
+      var promise = API.getAtms(location.lat, location.lng,
         config.distanceUnit, config.postalCode, config.country, pageLength,
         pageOffset);
 
       promise
         .done(function(data) {
-          pageOffset += pageLength;
-
-          if (data.totalCount <= pageOffset) {
-            maxItemsReached = true;
-          }
-
-          $.each(data.atm, function(index, atm) {
-            view.renderAtm(atm);
-          });
+          cache.put(key, data);
+          renderAtms(data);
         })
         .always(function() {
           loadingInProgress = false;
+
+          if (pendingLocation) {
+            var next = pendingLocation;
+            pendingLocation = null;
+            fetchAtms(next);
+          }
         });
     }
 
@@ -52,6 +52,25 @@ var View = (function($, document) {
     var maps;
     var onMapInitializedCallback;
 
+    // ATMs already rendered, so repeated results only create new nodes and markers.
+    // only the most recent ones are kept, older list nodes and markers are dropped
+    var maxRenderedAtms = config.maxRenderedAtms || 200;
+    var renderedAtms = {};
+    var renderedKeys = [];
+
+    function atmKey(atm) {
+      return atm.location.name + '|' + atm.location.point.latitude + '|' + atm.location.point.longitude;
+    }
+
+    function dropOldestAtm() {
+      var key = renderedKeys.shift();
+      var rendered = renderedAtms[key];
+      delete renderedAtms[key];
+
+      rendered.item.remove();
+      maps.removeMarker(rendered.marker);
+    }
+
     function showLoadingIndicator(textToShow) {
       $('#atms-list-loading')
         .removeClass('hide')
@@ -136,6 +155,11 @@ var View = (function($, document) {
       renderAtm: function(atm) {
         hideLoadingIndicator();
 
+        var key = atmKey(atm);
+        if (renderedAtms[key]) {
+          return;
+        }
+
         var atmListElem = $('#atm-list');
 
         var address = atm.location.address;
@@ -203,12 +227,18 @@ var View = (function($, document) {
         };
 
         // create google maps marker
-        maps.addMarker(position, function() {
+        var marker = maps.addMarker(position, function() {
           maps.panTo(this.getPosition());
 
           // scroll to the dom node
           expandAtmNode(atmItem, true);
         });
+
+        renderedAtms[key] = {item: atmItem, marker: marker};
+        renderedKeys.push(key);
+        if (renderedKeys.length > maxRenderedAtms) {
+          dropOldestAtm();
+        }
       }
     };
   };
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+describe('LruCache', function() {
+  'use strict';
+
+  var expect = chai.expect;
+
+  describe('#get()', function() {
+    it('should return stored values', function() {
+      var cache = new LruCache(2);
+
+      cache.put('a', 1);
+
+      expect(cache.get('a')).to.equal(1);
+      expect(cache.get('b')).to.be.undefined;
+    });
+  });
+
+  describe('#put()', function() {
+    it('should evict the least recently used value when full', function() {
+      var cache = new LruCache(2);
+
+      cache.put('a', 1);
+      cache.put('b', 2);
+      cache.get('a');
+      cache.put('c', 3);
+
+      expect(cache.size()).to.equal(2);
+      expect(cache.get('a')).to.equal(1);
+      expect(cache.get('b')).to.be.undefined;
+      expect(cache.get('c')).to.equal(3);
+    });
+
+    it('should replace existing values without growing', function() {
+      var cache = new LruCache(2);
+
+      cache.put('a', 1);
+      cache.put('a', 2);
+
+      expect(cache.size()).to.equal(1);
+      expect(cache.get('a')).to.equal(2);
+    });
+  });
+});
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+describe('Maps', function() {
+  'use strict';
+
+  var expect = chai.expect;
+
+  var sandbox;
+  var idleHandlers;
+  var viewport;
+  var createdMarkers;
+
+  // minimal google maps api, the viewport only contains positions with 0 <= lat < 1
+  function Marker(options) {
+    this.position = options.position;
+    this.map = options.map;
+    createdMarkers.push(this);
+  }
+
+  Marker.prototype.setMap = function(map) {
+    this.map = map;
+  };
+
+  Marker.prototype.setPosition = function(position) {
+    this.position = position;
+  };
+
+  Marker.prototype.getPosition = function() {
+    return this.position;
+  };
+
+  Marker.prototype.addListener = function() {
+    return {};
+  };
+
+  function LatLngBounds() {
+  }
+
+  LatLngBounds.prototype.extend = function() {
+    return this;
+  };
+
+  LatLngBounds.prototype.contains = function() {
+    return true;
+  };
+
+  function fireIdle() {
+    idleHandlers.forEach(function(handler) {
+      handler();
+    });
+  }
+
+  function createMaps() {
+    return new Maps({}, 19, {lat: 0.5, lng: 0});
+  }
+
+  beforeEach(function() {
+    sandbox = sinon.sandbox.create();
+    idleHandlers = [];
+    createdMarkers = [];
+    viewport = {min: 0, max: 1};
+
+    window.google = {
+      maps: {
+        Map: function() {
+          this.getBounds = function() {
+            return {
+              contains: function(position) {
+                return position.lat >= viewport.min && position.lat < viewport.max;
+              }
+            };
+          };
+        },
+        Marker: Marker,
+        LatLngBounds: LatLngBounds,
+        event: {
+          addListener: function(target, name, handler) {
+            if (name === 'idle') {
+              idleHandlers.push(handler);
+            }
+          },
+          addListenerOnce: function() {},
+          removeListener: function() {}
+        }
+      }
+    };
+  });
+
+  afterEach(function() {
+    sandbox.restore();
+    delete window.google;
+  });
+
+  describe('#addMarker()', function() {
+    it('should only attach markers inside the viewport', function() {
+      var maps = createMaps();
+
+      var visible = maps.addMarker({lat: 0.5, lng: 0}, function() {});
+      var hidden = maps.addMarker({lat: 1.5, lng: 0}, function() {});
+
+      expect(createdMarkers.length).to.equal(1);
+      expect(visible.marker).to.equal(createdMarkers[0]);
+      expect(hidden.marker).to.be.null;
+    });
+  });
+
+  describe('idle handler', function() {
+    it('should hide markers leaving the viewport and show markers entering it', function() {
+      var maps = createMaps();
+      var first = maps.addMarker({lat: 0.5, lng: 0}, function() {});
+      var second = maps.addMarker({lat: 1.5, lng: 0}, function() {});
+      var marker = first.marker;
+
+      viewport = {min: 1, max: 2};
+      fireIdle();
+
+      expect(first.marker).to.be.null;
+      expect(second.marker).to.equal(marker);
+      expect(marker.map).to.not.be.null;
+      expect(marker.getPosition()).to.deep.equal({lat: 1.5, lng: 0});
+    });
+
+    it('should reuse hidden markers before creating new ones', function() {
+      var maps = createMaps();
+      maps.addMarker({lat: 0.2, lng: 0}, function() {});
+      maps.addMarker({lat: 0.4, lng: 0}, function() {});
+      maps.addMarker({lat: 1.2, lng: 0}, function() {});
+      maps.addMarker({lat: 1.4, lng: 0}, function() {});
+      maps.addMarker({lat: 1.6, lng: 0}, function() {});
+
+      viewport = {min: 1, max: 2};
+      fireIdle();
+
+      expect(createdMarkers.length).to.equal(3);
+      expect(createdMarkers.filter(function(marker) {
+        return marker.map;
+      }).length).to.equal(3);
+    });
+
+    it('should remove listeners of hidden markers', function() {
+      var removeListener = sandbox.spy(google.maps.event, 'removeListener');
+      var maps = createMaps();
+      maps.addMarker({lat: 0.5, lng: 0}, function() {});
+
+      viewport = {min: 1, max: 2};
+      fireIdle();
+
+      expect(removeListener).to.have.been.calledOnce;
+    });
+  });
+
+  describe('#removeMarker()', function() {
+    it('should detach the marker and forget the entry', function() {
+      var maps = createMaps();
+      var entry = maps.addMarker({lat: 0.5, lng: 0}, function() {});
+      var marker = entry.marker;
+
+      maps.removeMarker(entry);
+
+      expect(marker.map).to.be.null;
+      expect(entry.marker).to.be.null;
+
+      // the pooled marker is reused and the removed entry is not shown again
+      var other = maps.addMarker({lat: 0.6, lng: 0}, function() {});
+      fireIdle();
+
+      expect(createdMarkers.length).to.equal(1);
+      expect(other.marker).to.equal(marker);
+      expect(entry.marker).to.be.null;
+    });
+  });
+});
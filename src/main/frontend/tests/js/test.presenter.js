@@ -116,18 +116,43 @@ describe('Presenter', function() {
     ]
   };
 
-  before(function() {
+  beforeEach(function() {
     sandbox = sinon.sandbox.create();
     fakeServer = sandbox.useFakeServer();
 
     view = new View(config);
   });
 
-  after(function() {
+  afterEach(function() {
     fakeServer.restore();
     sandbox.restore();
   });
 
+  function respondWithAtms() {
+    fakeServer.respondWith('GET', /atms\?.*/,
+            [
+              200,
+              { "Content-Type": "application/json" },
+              JSON.stringify(atms)
+            ]);
+  }
+
+  // creates the presenter, completes the initial fetch and returns the center changed handler
+  function initPresenter() {
+    sandbox.stub(view, 'renderCurrentLocation');
+    sandbox.stub(view, 'addCenterChangedHandler');
+    sandbox.stub(view, 'renderAtm');
+    sandbox.stub(view, 'onMapInitialized', function(callback) {
+      callback();
+    });
+
+    presenter = new Presenter(view, config);
+
+    fakeServer.respond();
+
+    return view.addCenterChangedHandler.firstCall.args[0];
+  }
+
   it('should initialize and fetch ATMs', function() {
     fakeServer.respondWith('GET', /atms\?.*/g,
             [
@@ -153,4 +178,63 @@ describe('Presenter', function() {
     expect(view.addCenterChangedHandler).to.have.been.calledOnce;
     expect(view.renderAtm).to.have.been.calledTwice;
   });
+
+  it('should debounce center changes', function() {
+    var clock = sandbox.useFakeTimers();
+    respondWithAtms();
+    var onCenterChanged = initPresenter();
+
+    onCenterChanged({lat: 41, lng: -74});
+    onCenterChanged({lat: 42, lng: -74});
+    onCenterChanged({lat: 43, lng: -74});
+    clock.tick(299);
+
+    expect(fakeServer.requests.length).to.equal(1);
+
+    clock.tick(1);
+
+    expect(fakeServer.requests.length).to.equal(2);
+    expect(fakeServer.requests[1].url).to.contain('latitude=43');
+  });
+
+  it('should not fetch areas that are already cached', function() {
+    var clock = sandbox.useFakeTimers();
+    respondWithAtms();
+    var onCenterChanged = initPresenter();
+
+    onCenterChanged({lat: 41.001, lng: -74.001});
+    clock.tick(300);
+    fakeServer.respond();
+
+    onCenterChanged({lat: 42, lng: -74});
+    clock.tick(300);
+    fakeServer.respond();
+
+    // snaps to the same area as the first center
+    onCenterChanged({lat: 40.999, lng: -73.999});
+    clock.tick(300);
+
+    expect(fakeServer.requests.length).to.equal(3);
+    expect(view.renderAtm.callCount).to.equal(8);
+  });
+
+  it('should fetch the latest area once the current request completes', function() {
+    var clock = sandbox.useFakeTimers();
+    respondWithAtms();
+    var onCenterChanged = initPresenter();
+
+    onCenterChanged({lat: 41, lng: -74});
+    clock.tick(300);
+    onCenterChanged({lat: 42, lng: -74});
+    clock.tick(300);
+    onCenterChanged({lat: 43, lng: -74});
+    clock.tick(300);
+
+    expect(fakeServer.requests.length).to.equal(2);
+
+    fakeServer.respond();
+
+    expect(fakeServer.requests.length).to.equal(3);
+    expect(fakeServer.requests[2].url).to.contain('latitude=43');
+  });
 });
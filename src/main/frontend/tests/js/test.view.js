@@ -147,11 +147,51 @@ describe('View', function() {
 
   describe('#renderAtm()', function() {
     var stub = {
-      addMarker: function() {}
+      addMarker: function() {},
+      removeMarker: function() {}
+    }
+
+    function createAtm(name) {
+      return {
+        "location":{
+          "name":name,
+          "distance":0.02,
+          "distanceUnit":"kilometer",
+          "address":{
+            "line1":"123 STREET 1",
+            "line2":null,
+            "city":"TEST CITY",
+            "postalCode":"10011",
+            "countrySubdivision":{
+              "name":null,
+              "code":"AA"
+            },
+            "country":{
+              "name":"TEST COUNTRY",
+              "code":"AAA"
+            }
+          },
+          "point":{
+            "latitude":40.742759,
+            "longitude":-74.000528
+          }
+        },
+        "handicapAccessible":false,
+        "camera":false,
+        "availability":"UNKNOWN",
+        "accessFees":"DOMESTIC",
+        "sharedDeposit":false,
+        "surchargeFreeAlliance":false,
+        "supportEmv":false,
+        "internationalMaestroAccepted":false
+      };
     }
 
     beforeEach(function() {
-      sandbox.stub(stub, 'addMarker');
+      sandbox.stub(stub, 'addMarker', function(position) {
+        return {position: position};
+      });
+      sandbox.stub(stub, 'removeMarker');
       sandbox.stub(window, 'Maps').returns(stub);
     });
 
@@ -261,5 +301,70 @@ describe('View', function() {
         lng: -74.000528
       });
     });
+
+    it('should not render the same ATM twice', function() {
+      var atm = {
+        "location":{
+          "name":"TEST LOCATION 1",
+          "distance":0.02,
+          "distanceUnit":"kilometer",
+          "address":{
+            "line1":"123 STREET 1",
+            "line2":null,
+            "city":"TEST CITY",
+            "postalCode":"10011",
+            "countrySubdivision":{
+              "name":null,
+              "code":"AA"
+            },
+            "country":{
+              "name":"TEST COUNTRY",
+              "code":"AAA"
+            }
+          },
+          "point":{
+            "latitude":40.742759,
+            "longitude":-74.000528
+          }
+        },
+        "handicapAccessible":false,
+        "camera":false,
+        "availability":"UNKNOWN",
+        "accessFees":"DOMESTIC",
+        "sharedDeposit":false,
+        "surchargeFreeAlliance":false,
+        "supportEmv":false,
+        "internationalMaestroAccepted":false
+      };
+
+      view.initMap();
+      view.renderAtm(atm);
+      view.renderAtm(atm);
+
+      expect(jQuery('#atm-list').children().length).to.equal(1);
+      expect(stub.addMarker).to.have.been.calledOnce;
+    });
+
+    it('should drop the oldest ATMs beyond the limit', function() {
+      view = new View({maxRenderedAtms: 2});
+      view.initMap();
+
+      view.renderAtm(createAtm('TEST LOCATION 1'));
+      var firstMarker = stub.addMarker.returnValues[0];
+      view.renderAtm(createAtm('TEST LOCATION 2'));
+      view.renderAtm(createAtm('TEST LOCATION 3'));
+
+      expect(jQuery('#atm-list').children().length).to.equal(2);
+      expect(jQuery('#atm-list .atms-list-item-name').eq(0).text()).to.equal('TEST LOCATION 2');
+      expect(jQuery('#atm-list .atms-list-item-name').eq(1).text()).to.equal('TEST LOCATION 3');
+      expect(stub.removeMarker).to.have.been.calledOnce;
+      expect(stub.removeMarker).to.have.been.calledWith(firstMarker);
+
+      // a dropped ATM is rendered again when it comes back
+      view.renderAtm(createAtm('TEST LOCATION 1'));
+
+      expect(stub.addMarker).to.have.callCount(4);
+      expect(jQuery('#atm-list .atms-list-item-name').eq(1).text()).to.equal('TEST LOCATION 1');
+    });
   });
 });
@@ -32,4 +32,5 @@ import org.springframework.http.MediaType;
 public interface Constants {
     String APPLICATION_JSON_UTF8_VALUE = MediaType.APPLICATION_JSON_VALUE + ";charset=UTF-8";
     MediaType APPLICATION_JSON_UTF8 = MediaType.valueOf(APPLICATION_JSON_UTF8_VALUE);
+    String DATASET_VERSION_HEADER = "X-Dataset-Version";
 }
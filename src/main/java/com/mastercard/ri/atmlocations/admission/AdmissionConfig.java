@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.admission;
+
+import com.mastercard.ri.atmlocations.cluster.ClusterPeers;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@Configuration
+@PropertySource("admission.properties")
+public class AdmissionConfig extends WebMvcConfigurerAdapter {
+    @Value("${admission.enabled}")
+    private boolean enabled;
+
+    @Value("${admission.client.id.header}")
+    private String clientIdHeader;
+
+    @Value("${admission.trusted.proxies}")
+    private String trustedProxies;
+
+    @Value("${admission.client.requests.per.second}")
+    private double clientRate;
+
+    @Value("${admission.client.burst}")
+    private int clientBurst;
+
+    @Value("${admission.upstream.requests.per.second}")
+    private double upstreamRate;
+
+    @Value("${admission.upstream.burst}")
+    private int upstreamBurst;
+
+    @Autowired
+    private ClusterPeers clusterPeers;
+
+    @Bean
+    public AdmissionController admissionController() {
+        if (!enabled) {
+            // callers charging the upstream budget directly are not limited either
+            return new AdmissionController(0, 0, 0, 0);
+        }
+        return new AdmissionController(clientRate, clientBurst, upstreamRate, upstreamBurst);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (enabled) {
+            registry.addInterceptor(new AdmissionInterceptor(admissionController(), clientIdHeader, getTrustedProxies(), clusterPeers)).addPathPatterns("/atms", "/atms/**");
+        }
+    }
+
+    private Set<String> getTrustedProxies() {
+        Set<String> proxies = new HashSet<>();
+        for (String proxy : trustedProxies.split(",")) {
+            if (!proxy.trim().isEmpty()) {
+                proxies.add(proxy.trim());
+            }
+        }
+        return proxies;
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.admission;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free per-client rate limiting combined with a global upstream budget.
+ * <p>
+ * Each bucket is a GCRA (virtual scheduling) token bucket held in a single atomic long: the
+ * theoretical arrival time of the next request. Clients are hashed onto a fixed number of
+ * stripes so memory stays bounded no matter how many client ids are seen. The upstream budget
+ * is shared fairly by stretching each client's interval to {@code upstreamInterval * activeClients},
+ * where only clients admitted within the last few seconds count as active.
+ */
+public class AdmissionController {
+    static final int STRIPES = 4096;
+
+    private static final long ACTIVE_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final long ACTIVE_SCAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLongArray clientTat = new AtomicLongArray(STRIPES);
+    private final AtomicLongArray clientLastSeen = new AtomicLongArray(STRIPES);
+    private final AtomicLong upstreamTat = new AtomicLong();
+    private final AtomicLong nextActiveScan = new AtomicLong();
+    private volatile int activeClients = 1;
+
+    private final long clientIntervalNanos;
+    private final int clientBurst;
+    private final long upstreamIntervalNanos;
+    private final int upstreamBurst;
+    private final long origin = System.nanoTime();
+
+    /**
+     * @param clientRate      requests per second allowed per client, 0 for unlimited
+     * @param clientBurst     requests a client may issue back to back
+     * @param upstreamRate    requests per second allowed upstream across all clients, 0 for unlimited
+     * @param upstreamBurst   requests that may be issued upstream back to back
+     */
+    public AdmissionController(double clientRate, int clientBurst, double upstreamRate, int upstreamBurst) {
+        this.clientIntervalNanos = intervalNanos(clientRate);
+        this.clientBurst = Math.max(1, clientBurst);
+        this.upstreamIntervalNanos = intervalNanos(upstreamRate);
+        this.upstreamBurst = Math.max(1, upstreamBurst);
+    }
+
+    /**
+     * Returns 0 if the request is admitted, otherwise the number of nanoseconds after which
+     * the client may retry.
+     */
+    public long tryAcquire(String clientId) {
+        return tryAcquire(clientId, System.nanoTime() - origin);
+    }
+
+    long tryAcquire(String clientId, long now) {
+        return tryAcquireFanOut(clientId, 1, now);
+    }
+
+    /**
+     * Takes {@code permits} tokens from both the client's bucket and the upstream budget for a
+     * request that fans out into several upstream calls. Returns 0 if they were granted, otherwise
+     * the number of nanoseconds after which the client may retry. No tokens are taken on refusal.
+     * More permits than a burst are granted only when that bucket is full and leave it in debt, so
+     * the client pays for the whole fan-out before its next request.
+     */
+    public long tryAcquireFanOut(String clientId, int permits) {
+        return tryAcquireFanOut(clientId, permits, System.nanoTime() - origin);
+    }
+
+    long tryAcquireFanOut(String clientId, int permits, long now) {
+        if (permits <= 0) {
+            return 0;
+        }
+        int stripe = stripe(clientId);
+        updateActiveClients(now);
+
+        long interval = clientInterval();
+        if (interval > 0) {
+            long wait = acquire(clientTat, stripe, now, interval * permits, interval, clientBurst);
+            if (wait > 0) {
+                return wait;
+            }
+        }
+
+        if (upstreamIntervalNanos > 0) {
+            long wait = acquire(upstreamTat, now, upstreamIntervalNanos * permits, upstreamIntervalNanos, upstreamBurst);
+            if (wait > 0) {
+                // give the client tokens back, the request never reached upstream
+                clientTat.addAndGet(stripe, -interval * permits);
+                return wait;
+            }
+        }
+
+        // only admitted clients take a share of the upstream budget, rejected ones cannot
+        // dilute it by cycling through client ids
+        clientLastSeen.set(stripe, now);
+        return 0;
+    }
+
+    /**
+     * Gives back tokens taken by {@link #tryAcquireFanOut(String, int)} for calls that were not made.
+     */
+    public void releaseFanOut(String clientId, int permits) {
+        if (permits <= 0) {
+            return;
+        }
+        long interval = clientInterval();
+        if (interval > 0) {
+            clientTat.addAndGet(stripe(clientId), -interval * permits);
+        }
+        releaseUpstream(permits);
+    }
+
+    /**
+     * Takes {@code permits} tokens from the upstream budget for calls made on behalf of an
+     * already admitted request, e.g. fan-out queries. Returns 0 if they were granted, otherwise
+     * the number of nanoseconds after which the budget allows them. No tokens are taken on refusal.
+     * More permits than the upstream burst are granted only when the budget is untouched.
+     */
+    public long tryAcquireUpstream(int permits) {
+        return tryAcquireUpstream(permits, System.nanoTime() - origin);
+    }
+
+    long tryAcquireUpstream(int permits, long now) {
+        if (upstreamIntervalNanos == 0 || permits <= 0) {
+            return 0;
+        }
+        return acquire(upstreamTat, now, upstreamIntervalNanos * permits, upstreamIntervalNanos, upstreamBurst);
+    }
+
+    /**
+     * Takes {@code permits} tokens from the upstream budget for background calls, but only if at least
+     * {@code reserve} tokens remain for requests afterwards. Returns 0 if they were granted, otherwise
+     * the number of nanoseconds after which the budget would allow them if requests took no more.
+     */
+    public long tryAcquireSpareUpstream(int permits, int reserve) {
+        return tryAcquireSpareUpstream(permits, reserve, System.nanoTime() - origin);
+    }
+
+    long tryAcquireSpareUpstream(int permits, int reserve, long now) {
+        if (upstreamIntervalNanos == 0 || permits <= 0) {
+            return 0;
+        }
+        // a smaller burst, so that the reserved tokens are never handed out; a reserve of the whole
+        // burst leaves background calls the budget only when it is untouched
+        int burst = Math.max(1, upstreamBurst - Math.max(0, reserve));
+        return acquire(upstreamTat, now, upstreamIntervalNanos * permits, upstreamIntervalNanos, burst);
+    }
+
+    /**
+     * Gives back tokens taken by {@link #tryAcquireUpstream(int)} for calls that were not made.
+     */
+    public void releaseUpstream(int permits) {
+        if (upstreamIntervalNanos > 0 && permits > 0) {
+            upstreamTat.addAndGet(-upstreamIntervalNanos * permits);
+        }
+    }
+
+    int getActiveClients() {
+        return activeClients;
+    }
+
+    private long clientInterval() {
+        long interval = clientIntervalNanos;
+        if (upstreamIntervalNanos > 0) {
+            interval = Math.max(interval, upstreamIntervalNanos * activeClients);
+        }
+        return interval;
+    }
+
+    private void updateActiveClients(long now) {
+        long next = nextActiveScan.get();
+        if (now - next < 0 || !nextActiveScan.compareAndSet(next, now + ACTIVE_SCAN_INTERVAL_NANOS)) {
+            return;
+        }
+
+        int count = 0;
+        for (int i = 0; i < STRIPES; i++) {
+            long seen = clientLastSeen.get(i);
+            if (seen != 0 && now - seen < ACTIVE_WINDOW_NANOS) {
+                count++;
+            }
+        }
+        activeClients = Math.max(1, count);
+    }
+
+    /**
+     * A cost above the whole burst is granted once the bucket is full and leaves it in debt,
+     * so later requests wait until the budget has been paid back.
+     */
+    private static long acquire(AtomicLongArray tats, int index, long now, long cost, long interval, int burst) {
+        long capacity = burst * interval;
+        while (true) {
+            long tat = tats.get(index);
+            long newTat = Math.max(tat, now) + cost;
+            long wait = Math.max(tat, now) + Math.min(cost, capacity) - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tats.compareAndSet(index, tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private static long acquire(AtomicLong tatHolder, long now, long cost, long interval, int burst) {
+        long capacity = burst * interval;
+        while (true) {
+            long tat = tatHolder.get();
+            long newTat = Math.max(tat, now) + cost;
+            long wait = Math.max(tat, now) + Math.min(cost, capacity) - now - capacity;
+            if (wait > 0) {
+                return wait;
+            }
+            if (tatHolder.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    static int stripe(String clientId) {
+        int h = clientId.hashCode();
+        return (h ^ (h >>> 16)) & (STRIPES - 1);
+    }
+
+    private static long intervalNanos(double rate) {
+        return rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) / rate) : 0;
+    }
+}
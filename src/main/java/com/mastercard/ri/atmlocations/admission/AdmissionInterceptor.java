@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.admission;
+
+import com.mastercard.ri.atmlocations.cluster.ClusterPeers;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Set;
+
+public class AdmissionInterceptor extends HandlerInterceptorAdapter {
+    /**
+     * Request attribute holding the id of the admitted client, for handlers that charge it for more calls.
+     */
+    public static final String CLIENT_ID_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".CLIENT_ID";
+
+    private final AdmissionController admissionController;
+    private final String clientIdHeader;
+    private final Set<String> trustedProxies;
+    private final ClusterPeers clusterPeers;
+
+    /**
+     * @param clientIdHeader header naming the client, honoured only on requests from a trusted proxy
+     * @param trustedProxies remote addresses allowed to identify the client on its behalf
+     * @param clusterPeers   nodes that may forward requests, admitted by them or on behalf of their client
+     */
+    public AdmissionInterceptor(AdmissionController admissionController, String clientIdHeader, Set<String> trustedProxies, ClusterPeers clusterPeers) {
+        this.admissionController = admissionController;
+        this.clientIdHeader = clientIdHeader;
+        this.trustedProxies = trustedProxies;
+        this.clusterPeers = clusterPeers;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (clusterPeers.isAdmittedByPeer(request)) {
+            return true;
+        }
+
+        String clientId = getClientId(request);
+        long wait = admissionController.tryAcquire(clientId);
+        if (wait > 0) {
+            throw RateLimitExceededException.retryAfterNanos(wait);
+        }
+
+        request.setAttribute(ClusterPeers.ADMITTED_ATTRIBUTE, Boolean.TRUE);
+        request.setAttribute(CLIENT_ID_ATTRIBUTE, clientId);
+        return true;
+    }
+
+    String getClientId(HttpServletRequest request) {
+        String remoteAddr = clusterPeers.isForwardedByPeer(request)
+                ? clusterPeers.getForwardedClientAddress(request)
+                : request.getRemoteAddr();
+        if (clientIdHeader.isEmpty() || !trustedProxies.contains(remoteAddr)) {
+            return remoteAddr;
+        }
+
+        String clientId = request.getHeader(clientIdHeader);
+        return clientId == null || clientId.isEmpty() ? remoteAddr : clientId;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.assets;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Build step run over the staged frontend files during {@code prepare-package} (see pom.xml).
+ * <p>
+ * Every asset is copied to a name containing a hash of its content, references from stylesheets
+ * and index.html are rewritten to the hashed names, and compressible files get a pre-gzipped
+ * {@code .gz} variant next to them. Original files are kept so that references built at runtime
+ * (e.g. marker icons in JavaScript) keep working.
+ * <p>
+ * Only needed at build time, the war and the standalone jar leave it out.
+ */
+public class StaticAssetFingerprinter {
+    private static final String INDEX = "index.html";
+    private static final Pattern CSS_URL = Pattern.compile("url\\(\\s*(['\"]?)([^'\")]+)\\1\\s*\\)");
+    private static final Pattern HTML_REFERENCE = Pattern.compile("((?:src|href)\\s*=\\s*\")([^\"]+)(\")");
+    private static final Set<String> COMPRESSIBLE = new HashSet<>(Arrays.asList(
+            "html", "js", "css", "svg", "map", "ttf", "eot", "json", "txt"));
+
+    private final Path root;
+    private final Map<String, String> fingerprinted = new HashMap<>();
+
+    public StaticAssetFingerprinter(Path root) {
+        this.root = root;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            throw new IllegalArgumentException("Usage: StaticAssetFingerprinter <static assets directory>");
+        }
+        new StaticAssetFingerprinter(Paths.get(args[0])).process();
+    }
+
+    public void process() throws IOException {
+        List<String> files = listFiles();
+
+        // stylesheets reference other assets, so they are fingerprinted after everything else
+        for (String file : files) {
+            if (!file.equals(INDEX) && !file.endsWith(".css") && !file.endsWith(".map")) {
+                fingerprint(file, Files.readAllBytes(root.resolve(file)));
+            }
+        }
+        for (String file : files) {
+            if (file.endsWith(".css")) {
+                fingerprint(file, rewrite(file, CSS_URL, 2).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        if (files.contains(INDEX)) {
+            Files.write(root.resolve(INDEX), rewrite(INDEX, HTML_REFERENCE, 2).getBytes(StandardCharsets.UTF_8));
+        }
+
+        for (String file : listFiles()) {
+            compress(file);
+        }
+        for (String file : fingerprinted.values()) {
+            compress(file);
+        }
+    }
+
+    Map<String, String> getFingerprinted() {
+        return fingerprinted;
+    }
+
+    /**
+     * Lists the source files, skipping the output of a previous run.
+     */
+    private List<String> listFiles() throws IOException {
+        final List<String> files = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                String path = toRelativePath(file);
+                if (!path.endsWith(".gz") && !StaticAssetHandler.FINGERPRINTED.matcher(path).matches()) {
+                    files.add(path);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        return files;
+    }
+
+    private void fingerprint(String file, byte[] content) throws IOException {
+        String hashed = hashedName(file, content);
+        Files.write(root.resolve(hashed), content);
+        fingerprinted.put(file, hashed);
+    }
+
+    private void compress(String file) throws IOException {
+        int extension = file.lastIndexOf('.');
+        if (extension == -1 || !COMPRESSIBLE.contains(file.substring(extension + 1))) {
+            return;
+        }
+
+        byte[] content = Files.readAllBytes(root.resolve(file));
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(content);
+        }
+
+        if (compressed.size() < content.length) {
+            Files.write(root.resolve(file + ".gz"), compressed.toByteArray());
+        }
+    }
+
+    /**
+     * Rewrites the references matched by {@code group} of {@code pattern} in {@code file}
+     * to their fingerprinted names.
+     */
+    private String rewrite(String file, Pattern pattern, int group) throws IOException {
+        String content = new String(Files.readAllBytes(root.resolve(file)), StandardCharsets.UTF_8);
+        Path directory = root.resolve(file).getParent();
+
+        Matcher matcher = pattern.matcher(content);
+        StringBuffer rewritten = new StringBuffer(content.length());
+        while (matcher.find()) {
+            String reference = matcher.group(group);
+            String replacement = matcher.group();
+
+            if (!reference.contains(":") && !reference.startsWith("/")) {
+                // keep query strings and fragments such as "?#iefix"
+                int suffixStart = reference.length();
+                for (char c : new char[]{'?', '#'}) {
+                    int index = reference.indexOf(c);
+                    if (index != -1 && index < suffixStart) {
+                        suffixStart = index;
+                    }
+                }
+                String referencePath = reference.substring(0, suffixStart);
+
+                String hashed = fingerprinted.get(toRelativePath(directory.resolve(referencePath).normalize()));
+                if (hashed != null) {
+                    String hashedReference = referencePath.substring(0, referencePath.lastIndexOf('/') + 1)
+                            + hashed.substring(hashed.lastIndexOf('/') + 1)
+                            + reference.substring(suffixStart);
+                    replacement = replacement.substring(0, matcher.start(group) - matcher.start())
+                            + hashedReference
+                            + replacement.substring(matcher.end(group) - matcher.start());
+                }
+            }
+
+            matcher.appendReplacement(rewritten, Matcher.quoteReplacement(replacement));
+        }
+        matcher.appendTail(rewritten);
+
+        return rewritten.toString();
+    }
+
+    private String toRelativePath(Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    static String hashedName(String file, byte[] content) {
+        String hash = StaticAssetHandler.hash(content).substring(0, 10);
+        int slash = file.lastIndexOf('/');
+        int extension = file.lastIndexOf('.');
+        if (extension <= slash) {
+            return file + "." + hash;
+        }
+        return file.substring(0, extension) + "." + hash + file.substring(extension);
+    }
+}
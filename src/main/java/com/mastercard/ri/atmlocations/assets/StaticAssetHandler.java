@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.assets;
+
+import org.springframework.util.StreamUtils;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.context.ServletContextAware;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+/**
+ * Serves static assets from memory.
+ * <p>
+ * Fingerprinted assets (see StaticAssetFingerprinter) never change under the same name and
+ * are served with far-future immutable caching; everything else must be revalidated with its ETag.
+ * Pre-gzipped variants are served to clients accepting gzip.
+ */
+public class StaticAssetHandler implements HttpRequestHandler, ServletContextAware {
+    static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+    static final String REVALIDATE_CACHE_CONTROL = "no-cache";
+    static final Pattern FINGERPRINTED = Pattern.compile(".*\\.[0-9a-f]{10}\\.[^./]+$");
+
+    private final ConcurrentMap<String, StaticAsset> assets = new ConcurrentHashMap<>();
+    private final String location;
+    private ServletContext servletContext;
+
+    public StaticAssetHandler(String location) {
+        this.location = location;
+    }
+
+    @Override
+    public void setServletContext(ServletContext servletContext) {
+        this.servletContext = servletContext;
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        boolean head = "HEAD".equals(request.getMethod());
+        if (!head && !"GET".equals(request.getMethod())) {
+            response.setHeader("Allow", "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+
+        String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+        StaticAsset asset = path != null ? getAsset(path) : null;
+        if (asset == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        boolean gzip = asset.gzipped != null && acceptsGzip(request);
+        String etag = gzip ? asset.gzippedEtag : asset.etag;
+
+        if (asset.contentType != null) {
+            response.setContentType(asset.contentType);
+        }
+        response.setHeader("Cache-Control", asset.immutable ? IMMUTABLE_CACHE_CONTROL : REVALIDATE_CACHE_CONTROL);
+        response.setHeader("ETag", etag);
+        if (asset.gzipped != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        byte[] body = gzip ? asset.gzipped : asset.content;
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(body.length);
+        if (!head) {
+            response.getOutputStream().write(body);
+        }
+    }
+
+    private StaticAsset getAsset(String path) throws IOException {
+        StaticAsset asset = assets.get(path);
+        if (asset != null) {
+            return asset;
+        }
+
+        if (path.isEmpty() || path.contains("..") || path.contains("WEB-INF") || path.contains("META-INF") || path.endsWith(".gz")) {
+            return null;
+        }
+
+        byte[] content = read(location + path);
+        if (content == null) {
+            // misses are not cached to keep memory bounded by the assets that exist
+            return null;
+        }
+
+        asset = new StaticAsset(content, read(location + path + ".gz"), servletContext.getMimeType(path),
+                FINGERPRINTED.matcher(path).matches());
+        StaticAsset existing = assets.putIfAbsent(path, asset);
+        return existing != null ? existing : asset;
+    }
+
+    private byte[] read(String resource) throws IOException {
+        InputStream in = servletContext.getResourceAsStream(resource);
+        if (in == null) {
+            return null;
+        }
+        try {
+            return StreamUtils.copyToByteArray(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Whether the Accept-Encoding header lists gzip, or *, with a non-zero quality.
+     */
+    static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Boolean wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean accepted = quality(parts) > 0;
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                return accepted;
+            }
+            if (name.equals("*")) {
+                wildcard = accepted;
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static double quality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    static String hash(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class StaticAsset {
+        final byte[] content;
+        final byte[] gzipped;
+        final String contentType;
+        final boolean immutable;
+        final String etag;
+        final String gzippedEtag;
+
+        StaticAsset(byte[] content, byte[] gzipped, String contentType, boolean immutable) {
+            this.content = content;
+            this.gzipped = gzipped;
+            this.contentType = contentType;
+            this.immutable = immutable;
+
+            String hash = hash(content);
+            this.etag = "\"" + hash + "\"";
+            this.gzippedEtag = "\"" + hash + "-gzip\"";
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.cluster;
+
+import com.mastercard.ri.atmlocations.logging.ErrorLogSampler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+@Configuration
+@PropertySource("cluster.properties")
+public class ClusterConfig extends WebMvcConfigurerAdapter {
+    private static final int VIRTUAL_NODES = 128;
+
+    @Value("${cluster.enabled}")
+    private boolean enabled;
+
+    @Value("${cluster.self}")
+    private String self;
+
+    @Value("${cluster.peers}")
+    private String peers;
+
+    @Value("${cluster.peers.file}")
+    private String peersFile;
+
+    @Value("${cluster.geohash.precision}")
+    private int precision;
+
+    @Value("${cluster.forward.max.connections}")
+    private int maxConnections;
+
+    @Value("${cluster.forward.connect.timeout.millis}")
+    private int connectTimeout;
+
+    @Value("${cluster.forward.read.timeout.millis}")
+    private int readTimeout;
+
+    @Value("${cluster.forward.down.millis}")
+    private long downMillis;
+
+    @Autowired
+    private ErrorLogSampler errorLogSampler;
+
+    @Bean(destroyMethod = "close")
+    public CloseableHttpClient clusterHttpClient() {
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        RequestConfig requestConfig = RequestConfig.custom()
+                .setConnectionRequestTimeout(connectTimeout)
+                .setConnectTimeout(connectTimeout)
+                .setSocketTimeout(readTimeout)
+                .build();
+
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .disableCookieManagement()
+                .disableRedirectHandling()
+                .disableAutomaticRetries()
+                .build();
+    }
+
+    @Bean
+    public ClusterForwardingInterceptor clusterForwardingInterceptor() throws IOException {
+        List<String> nodes = getPeers();
+        if (!enabled) {
+            // a single node cluster owns every partition
+            nodes = Arrays.asList(self);
+        }
+        return new ClusterForwardingInterceptor(new ConsistentHashRing(nodes, VIRTUAL_NODES), self, precision, clusterHttpClient(), downMillis, errorLogSampler);
+    }
+
+    @Bean
+    public ClusterPeers clusterPeers() throws IOException {
+        return new ClusterPeers(enabled ? getPeers() : Collections.<String>emptyList());
+    }
+
+    /**
+     * May run before or after the admission interceptor, {@link ClusterPeers} makes sure a forwarded
+     * request is admitted exactly once either way.
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (enabled) {
+            try {
+                registry.addInterceptor(clusterForwardingInterceptor()).addPathPatterns("/atms");
+            } catch (IOException e) {
+                throw new IllegalStateException("Reading the cluster peers failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Reads the peers from the peers file if set, otherwise from the peers property.
+     * Peers are base URLs, one per line or comma separated.
+     */
+    private List<String> getPeers() throws IOException {
+        List<String> lines = peersFile.trim().isEmpty()
+                ? Arrays.asList(peers.split(","))
+                : Files.readAllLines(new File(peersFile.trim()).toPath(), StandardCharsets.UTF_8);
+
+        List<String> nodes = new ArrayList<>();
+        for (String line : lines) {
+            String node = line.trim();
+            if (!node.isEmpty() && !node.startsWith("#") && !nodes.contains(node)) {
+                nodes.add(node);
+            }
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.cluster;
+
+import com.mastercard.ri.atmlocations.logging.ErrorLogSampler;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Forwards requests for geohash partitions owned by another node to that node.
+ * <p>
+ * Requests without coordinates, requests that were already forwarded and requests whose owner
+ * fails or cannot be reached are handled locally. An owner that failed is marked down for a while,
+ * during which its requests are handled locally right away; once that has passed a single request
+ * probes it again.
+ */
+@ManagedResource
+public class ClusterForwardingInterceptor extends HandlerInterceptorAdapter {
+    static final String FORWARDED_HEADER = "X-Cluster-Forwarded";
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterForwardingInterceptor.class);
+    private static final Set<String> SKIPPED_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization", "te", "trailer",
+            "transfer-encoding", "upgrade", "host", "content-length", "accept-encoding",
+            ClusterPeers.ADMITTED_HEADER.toLowerCase()));
+
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final ConcurrentMap<String, Long> downUntil = new ConcurrentHashMap<>();
+
+    private final ConsistentHashRing ring;
+    private final String self;
+    private final int precision;
+    private final CloseableHttpClient httpClient;
+    private final long downNanos;
+    private final ErrorLogSampler errorLogSampler;
+
+    /**
+     * @param downMillis how long an owner that failed is skipped
+     */
+    public ClusterForwardingInterceptor(ConsistentHashRing ring, String self, int precision, CloseableHttpClient httpClient,
+                                        long downMillis, ErrorLogSampler errorLogSampler) {
+        if (!ring.getNodes().contains(self)) {
+            throw new IllegalArgumentException("Node '" + self + "' is not one of the peers " + ring.getNodes() + ".");
+        }
+
+        this.ring = ring;
+        this.self = self;
+        this.precision = precision;
+        this.httpClient = httpClient;
+        this.downNanos = TimeUnit.MILLISECONDS.toNanos(downMillis);
+        this.errorLogSampler = errorLogSampler;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (request.getHeader(FORWARDED_HEADER) != null) {
+            return true;
+        }
+
+        String partition = getPartition(request);
+        if (partition == null) {
+            return true;
+        }
+
+        String owner = ring.getOwner(partition);
+        if (owner.equals(self)) {
+            return true;
+        }
+
+        if (!isDown(owner)) {
+            if (forward(request, response, owner)) {
+                downUntil.remove(owner);
+                forwarded.incrementAndGet();
+                return false;
+            }
+            downUntil.put(owner, System.nanoTime() + downNanos);
+        }
+
+        fallbacks.incrementAndGet();
+        return true;
+    }
+
+    @ManagedAttribute(description = "Requests forwarded to the owner of their partition")
+    public long getForwarded() {
+        return forwarded.get();
+    }
+
+    @ManagedAttribute(description = "Requests handled locally because their owner failed")
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    @ManagedAttribute(description = "Owners currently marked down after a failure")
+    public int getDownOwners() {
+        long now = System.nanoTime();
+        int count = 0;
+        for (long until : downUntil.values()) {
+            if (now - until < 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether requests for the owner are to be handled locally without trying it. Once the
+     * owner's down period has passed, the first caller gets to probe it and the others keep falling
+     * back until the probe succeeds or fails.
+     */
+    private boolean isDown(String owner) {
+        Long until = downUntil.get(owner);
+        if (until == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - until < 0) {
+            return true;
+        }
+        return !downUntil.replace(owner, until, now + downNanos);
+    }
+
+    String getPartition(HttpServletRequest request) {
+        try {
+            double latitude = Double.parseDouble(request.getParameter("latitude"));
+            double longitude = Double.parseDouble(request.getParameter("longitude"));
+            return Geohash.encode(latitude, longitude, precision);
+        } catch (NullPointerException | NumberFormatException e) {
+            // left to the controller to reject
+            return null;
+        }
+    }
+
+    /**
+     * Returns true if the owner's response was written, false if the request has to be handled locally.
+     */
+    private boolean forward(HttpServletRequest request, HttpServletResponse response, String owner) {
+        String uri = owner + request.getRequestURI().substring(request.getContextPath().length())
+                + (request.getQueryString() != null ? "?" + request.getQueryString() : "");
+
+        HttpGet get = new HttpGet(uri);
+        for (Enumeration<?> names = request.getHeaderNames(); names.hasMoreElements(); ) {
+            String name = (String) names.nextElement();
+            if (!SKIPPED_HEADERS.contains(name.toLowerCase())) {
+                for (Enumeration<?> values = request.getHeaders(name); values.hasMoreElements(); ) {
+                    get.addHeader(name, (String) values.nextElement());
+                }
+            }
+        }
+        get.setHeader(FORWARDED_HEADER, self);
+        get.addHeader("X-Forwarded-For", request.getRemoteAddr());
+        if (request.getAttribute(ClusterPeers.ADMITTED_ATTRIBUTE) != null) {
+            get.setHeader(ClusterPeers.ADMITTED_HEADER, "true");
+        }
+
+        int status;
+        Header[] headers;
+        byte[] body;
+        try (CloseableHttpResponse ownerResponse = httpClient.execute(get)) {
+            status = ownerResponse.getStatusLine().getStatusCode();
+            headers = ownerResponse.getAllHeaders();
+
+            // read the whole body first so that a failure can still fall back
+            HttpEntity entity = ownerResponse.getEntity();
+            body = entity != null ? EntityUtils.toByteArray(entity) : new byte[0];
+        } catch (IOException e) {
+            errorLogSampler.warn(logger, "ClusterForward:" + owner, "Forwarding to " + owner + " failed: " + e);
+            return false;
+        }
+
+        if (status >= HttpServletResponse.SC_INTERNAL_SERVER_ERROR) {
+            errorLogSampler.warn(logger, "ClusterForward:" + owner, "Forwarding to " + owner + " failed with status " + status);
+            return false;
+        }
+
+        response.setStatus(status);
+        for (Header header : headers) {
+            if (!SKIPPED_HEADERS.contains(header.getName().toLowerCase())) {
+                response.addHeader(header.getName(), header.getValue());
+            }
+        }
+        response.setContentLength(body.length);
+        try {
+            response.getOutputStream().write(body);
+        } catch (IOException e) {
+            // the client is gone, there is nothing to fall back to
+            logger.debug("Writing forwarded response failed", e);
+        }
+        return true;
+    }
+}
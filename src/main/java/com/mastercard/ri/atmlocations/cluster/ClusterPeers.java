@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Addresses of the cluster nodes, resolved once at startup, to recognise requests forwarded by a peer.
+ * <p>
+ * A request is admitted once, by the node it reaches first. If that node admitted it before forwarding,
+ * the request carries {@value #ADMITTED_HEADER} and the owner skips admission. Otherwise the owner
+ * admits it for the client address the peer appended to X-Forwarded-For.
+ */
+public class ClusterPeers {
+    /**
+     * Request attribute set on requests that passed admission on this node.
+     */
+    public static final String ADMITTED_ATTRIBUTE = ClusterPeers.class.getName() + ".ADMITTED";
+
+    static final String ADMITTED_HEADER = "X-Cluster-Admitted";
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterPeers.class);
+
+    private final Set<String> addresses = new HashSet<>();
+
+    /**
+     * @param nodes base URLs of the nodes, empty when cluster mode is disabled
+     */
+    public ClusterPeers(Collection<String> nodes) {
+        for (String node : nodes) {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(new URL(node).getHost())) {
+                    addresses.add(address.getHostAddress());
+                }
+            } catch (MalformedURLException | UnknownHostException e) {
+                logger.warn("Resolving peer {} failed: {}", node, e.toString());
+            }
+        }
+    }
+
+    public boolean isForwardedByPeer(HttpServletRequest request) {
+        return request.getHeader(ClusterForwardingInterceptor.FORWARDED_HEADER) != null
+                && addresses.contains(request.getRemoteAddr());
+    }
+
+    /**
+     * Whether the request was forwarded by a peer that has already admitted it.
+     */
+    public boolean isAdmittedByPeer(HttpServletRequest request) {
+        return isForwardedByPeer(request) && request.getHeader(ADMITTED_HEADER) != null;
+    }
+
+    /**
+     * The address of the client a request forwarded by a peer was made by, i.e. the last
+     * X-Forwarded-For entry, which the peer appended.
+     */
+    public String getForwardedClientAddress(HttpServletRequest request) {
+        String forwardedFor = null;
+        for (Enumeration<?> values = request.getHeaders("X-Forwarded-For"); values.hasMoreElements(); ) {
+            forwardedFor = (String) values.nextElement();
+        }
+        if (forwardedFor == null || forwardedFor.trim().isEmpty()) {
+            return request.getRemoteAddr();
+        }
+        return forwardedFor.substring(forwardedFor.lastIndexOf(',') + 1).trim();
+    }
+
+    Set<String> getAddresses() {
+        return addresses;
+    }
+}
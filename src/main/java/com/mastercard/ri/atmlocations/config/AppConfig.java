@@ -27,31 +27,54 @@
 
 package com.mastercard.ri.atmlocations.config;
 
+import com.mastercard.ri.atmlocations.assets.StaticAssetHandler;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.EnableMBeanExport;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.jmx.support.RegistrationPolicy;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.config.annotation.DefaultServletHandlerConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
-import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
 @ComponentScan("com.mastercard.ri.atmlocations")
 @EnableWebMvc
+@EnableMBeanExport(registration = RegistrationPolicy.REPLACE_EXISTING)
 public class AppConfig extends WebMvcConfigurerAdapter {
-
-    @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/**")
-                .addResourceLocations("/WEB-INF/static/");
-    }
+    private static final int UPSTREAM_THREADS = 16;
 
     @Override
     public void configureDefaultServletHandling(DefaultServletHandlerConfigurer configurer) {
         configurer.enable();
     }
 
+    @Bean
+    public StaticAssetHandler staticAssetHandler() {
+        return new StaticAssetHandler("/WEB-INF/static/");
+    }
+
+    @Bean
+    public HandlerMapping staticAssetHandlerMapping() {
+        SimpleUrlHandlerMapping mapping = new SimpleUrlHandlerMapping();
+        mapping.setUrlMap(Collections.singletonMap("/**", staticAssetHandler()));
+        // after controllers, before the default servlet
+        mapping.setOrder(Integer.MAX_VALUE - 1);
+        return mapping;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService upstreamExecutor() {
+        return Executors.newFixedThreadPool(UPSTREAM_THREADS);
+    }
+
     @Bean
     public static PropertySourcesPlaceholderConfigurer placeHolderConfigurer() {
         return new PropertySourcesPlaceholderConfigurer();
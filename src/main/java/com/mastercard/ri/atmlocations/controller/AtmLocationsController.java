@@ -31,33 +31,47 @@ import com.mastercard.api.core.exception.ApiException;
 import com.mastercard.api.core.model.RequestMap;
 import com.mastercard.api.locations.ATMLocations;
 import com.mastercard.ri.atmlocations.Constants;
-import com.mastercard.ri.atmlocations.generated.model.*;
+import com.mastercard.ri.atmlocations.dataset.DatasetReader;
+import com.mastercard.ri.atmlocations.generated.model.Atms;
+import com.mastercard.ri.atmlocations.projection.Projection;
+import com.mastercard.ri.atmlocations.projection.ProjectionCompiler;
+import com.mastercard.ri.atmlocations.service.AtmLocationsService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import javax.servlet.http.HttpServletResponse;
 
 @Controller
 @RequestMapping(value = "/atms", produces = Constants.APPLICATION_JSON_UTF8_VALUE)
 public class AtmLocationsController implements Constants {
     private static final Logger logger = LoggerFactory.getLogger(AtmLocationsController.class);
 
+    @Autowired
+    AtmLocationsService atmLocationsService;
+
+    @Autowired
+    ProjectionCompiler projectionCompiler;
+
     @RequestMapping(method = RequestMethod.GET)
     @ResponseBody
-    public Atms getAtmsByLatLng(@RequestParam(value = "pageOffset", defaultValue = "0", required = false) int pageOffset,
-                                @RequestParam(value = "pageLength", defaultValue = "20", required = false) int pageLength,
-                                @RequestParam("latitude") double latitude,
-                                @RequestParam("longitude") double longitude,
-                                @RequestParam("distanceUnit") String distanceUnit,
-                                @RequestParam("postalCode") String postalCode,
-                                @RequestParam("country") String country) throws ApiException {
+    public Object getAtmsByLatLng(@RequestParam(value = "pageOffset", defaultValue = "0", required = false) int pageOffset,
+                                  @RequestParam(value = "pageLength", defaultValue = "20", required = false) int pageLength,
+                                  @RequestParam("latitude") double latitude,
+                                  @RequestParam("longitude") double longitude,
+                                  @RequestParam("distanceUnit") String distanceUnit,
+                                  @RequestParam("postalCode") String postalCode,
+                                  @RequestParam("country") String country,
+                                  @RequestParam(value = "fields", required = false) String fields,
+                                  @RequestParam(value = "datasetVersion", required = false) Long datasetVersion,
+                                  HttpServletResponse response) throws ApiException {
+        Projection projection = fields != null ? projectionCompiler.compile(Atms.class, fields) : null;
+
         RequestMap map = new RequestMap();
         map.put("PageOffset", pageOffset);
         map.put("PageLength", pageLength);
@@ -67,76 +81,12 @@ public class AtmLocationsController implements Constants {
         map.put("PostalCode", postalCode);
         map.put("Country", country);
 
-        ATMLocations response = ATMLocations.query(map);
-
-        return processResponse(response);
-    }
-
-    private Atms processResponse(ATMLocations response) {
-
-        Atms atms = new Atms();
-        atms.setPageOffset(Integer.valueOf(response.get("Atms.PageOffset").toString()));
-        atms.setTotalCount(Integer.valueOf(response.get("Atms.TotalCount").toString()));
-
-        List<Map<String, Object>> list = (List<Map<String, Object>>) response.get("Atms.Atm");
-        if (list != null && !list.isEmpty()) {
-            List<Atm> atmList = new ArrayList<>(list.size());
-
-            for (Map<String, Object> i : list) {
-                Map<String, Object> locationMap = (Map<String, Object>) i.get("Location");
-                Map<String, Object> addressMap = (Map<String, Object>) locationMap.get("Address");
-                Map<String, Object> subDivisionMap = (Map<String, Object>) addressMap.get("CountrySubdivision");
-                Map<String, Object> countryMap = (Map<String, Object>) addressMap.get("Country");
-                Map<String, Object> pointMap = (Map<String, Object>) locationMap.get("Point");
-
-                CountrySubdivision subdivision = new CountrySubdivision();
-                subdivision.setCode((String) subDivisionMap.get("Code"));
-                subdivision.setName((String) subDivisionMap.get("Name"));
-
-                Country country = new Country();
-                country.setCode((String) countryMap.get("Code"));
-                country.setName((String) countryMap.get("Name"));
-
-                Address address = new Address();
-                address.setLine1((String) addressMap.get("Line1"));
-                address.setLine2((String) addressMap.get("Line2"));
-                address.setCity((String) addressMap.get("City"));
-                address.setPostalCode((String) addressMap.get("PostalCode"));
-                address.setCountrySubdivision(subdivision);
-                address.setCountry(country);
-
-                Point point = new Point();
-                point.setLatitude(Double.parseDouble(pointMap.get("Latitude").toString()));
-                point.setLongitude(Double.parseDouble(pointMap.get("Longitude").toString()));
-
-                Location location = new Location();
-                location.setName((String) locationMap.get("Name"));
-
-                if (locationMap.get("Distance") != null) {
-                    Double distance = Double.parseDouble(locationMap.get("Distance").toString());
-                    location.setDistance(Math.round(distance * 100) / 100.0);
-                }
-                location.setDistanceUnit(locationMap.get("DistanceUnit").toString().toLowerCase());
-                location.setAddress(address);
-                location.setPoint(point);
-
-                Atm atm = new Atm();
-
-                atm.setHandicapAccessible("YES".equals(i.get("HandicapAccessible")));
-                atm.setCamera("YES".equals(i.get("Camera")));
-                atm.setAvailability((String) i.get("Availability"));
-                atm.setAccessFees((String) i.get("AccessFees"));
-                atm.setSharedDeposit("YES".equals(i.get("SharedDeposit")));
-                atm.setSurchargeFreeAlliance("YES".equals(i.get("SurchargeFreeAlliance")));
-                atm.setSupportEmv(Long.valueOf(1).equals(i.get("SupportEMV")));
-                atm.setInternationalMaestroAccepted(Long.valueOf(1).equals(i.get("InternationalMaestroAccepted")));
-                atm.setLocation(location);
-
-                atmList.add(atm);
-            }
-            atms.setAtm(atmList);
+        Atms atms;
+        // clients pass the version back when paging, so that all pages come from the same version
+        try (DatasetReader<RequestMap, ATMLocations> dataset = atmLocationsService.openDataset(datasetVersion)) {
+            response.setHeader(DATASET_VERSION_HEADER, String.valueOf(dataset.getVersionNumber()));
+            atms = atmLocationsService.getAtms(dataset, map, projection);
         }
-
-        return atms;
+        return projection != null ? projection.apply(atms) : atms;
     }
 }
@@ -28,11 +28,16 @@
 package com.mastercard.ri.atmlocations.controller;
 
 import com.mastercard.api.core.exception.ApiException;
+import com.mastercard.ri.atmlocations.admission.RateLimitExceededException;
 import com.mastercard.ri.atmlocations.generated.model.Error;
 import com.mastercard.ri.atmlocations.generated.model.Errors;
+import com.mastercard.ri.atmlocations.logging.ErrorLogSampler;
+import com.mastercard.ri.atmlocations.projection.InvalidFieldsException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.TypeMismatchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
@@ -44,6 +49,9 @@ import org.springframework.web.bind.annotation.ExceptionHandler;
 public class ExceptionControllerAdvice {
     private static final Logger logger = LoggerFactory.getLogger(ExceptionControllerAdvice.class);
 
+    @Autowired
+    ErrorLogSampler errorLogSampler;
+
     @ExceptionHandler(ApiException.class)
     public ResponseEntity handleApiException(ApiException ex) {
         return handleThrowable(ex);
@@ -51,7 +59,7 @@ public class ExceptionControllerAdvice {
 
     @ExceptionHandler(TypeMismatchException.class)
     protected ResponseEntity handleTypeMismatch(TypeMismatchException ex) {
-        logger.error(ex.toString(), ex);
+        errorLogSampler.warn(logger, "TypeMismatch:" + ex.getPropertyName() + ":" + ex.getRequiredType(), ex.toString());
 
         Error error = new Error();
         error.setSource("Input");
@@ -65,7 +73,21 @@ public class ExceptionControllerAdvice {
 
     @ExceptionHandler(MissingServletRequestParameterException.class)
     protected ResponseEntity handleMissingRequestParameter(MissingServletRequestParameterException ex) {
-        logger.error(ex.toString(), ex);
+        errorLogSampler.warn(logger, "MissingParameter:" + ex.getParameterName(), ex.toString());
+
+        Error error = new Error();
+        error.setSource("Input");
+        error.setReason(ex.getMessage());
+
+        Errors errors = new Errors();
+        errors.addErrorItem(error);
+
+        return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidFieldsException.class)
+    protected ResponseEntity handleInvalidFields(InvalidFieldsException ex) {
+        errorLogSampler.warn(logger, "InvalidFields", ex.toString());
 
         Error error = new Error();
         error.setSource("Input");
@@ -77,9 +99,26 @@ public class ExceptionControllerAdvice {
         return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(RateLimitExceededException.class)
+    protected ResponseEntity handleRateLimitExceeded(RateLimitExceededException ex) {
+        errorLogSampler.warn(logger, "RateLimitExceeded", ex.toString());
+
+        Error error = new Error();
+        error.setSource("System");
+        error.setReason(ex.getMessage());
+
+        Errors errors = new Errors();
+        errors.addErrorItem(error);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("Retry-After", String.valueOf(ex.getRetryAfterSeconds()));
+
+        return new ResponseEntity<>(errors, headers, HttpStatus.TOO_MANY_REQUESTS);
+    }
+
     @ExceptionHandler(Throwable.class)
     public ResponseEntity handleThrowable(Throwable ex) {
-        logger.error(ex.toString(), ex);
+        errorLogSampler.error(logger, "handleThrowable:" + ex.getClass().getName(), ex.toString(), ex);
 
         Error error = new Error();
         error.setSource("System");
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.controller;
+
+import com.mastercard.api.core.exception.ApiException;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.locations.ATMLocations;
+import com.mastercard.ri.atmlocations.Constants;
+import com.mastercard.ri.atmlocations.admission.AdmissionController;
+import com.mastercard.ri.atmlocations.admission.AdmissionInterceptor;
+import com.mastercard.ri.atmlocations.admission.RateLimitExceededException;
+import com.mastercard.ri.atmlocations.dataset.DatasetReader;
+import com.mastercard.ri.atmlocations.generated.model.Atm;
+import com.mastercard.ri.atmlocations.generated.model.Atms;
+import com.mastercard.ri.atmlocations.generated.model.Point;
+import com.mastercard.ri.atmlocations.route.RouteCorridor;
+import com.mastercard.ri.atmlocations.service.AtmLocationsService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+@Controller
+@RequestMapping(value = "/atms/corridor", produces = Constants.APPLICATION_JSON_UTF8_VALUE)
+public class RouteCorridorController implements Constants {
+    private static final Logger logger = LoggerFactory.getLogger(RouteCorridorController.class);
+
+    static final int MAX_QUERY_POINTS = 200;
+    static final int PAGE_LENGTH_PER_POINT = 25;
+    static final int MAX_PAGES_PER_POINT = 2;
+    static final int MAX_CONCURRENT_QUERIES = 4;
+    static final double KM_PER_MILE = 1.609344;
+
+    @Autowired
+    AtmLocationsService atmLocationsService;
+
+    @Autowired
+    AdmissionController admissionController;
+
+    @Autowired
+    @Qualifier("upstreamExecutor")
+    ExecutorService upstreamExecutor;
+
+    @RequestMapping(method = RequestMethod.GET)
+    @ResponseBody
+    public Atms getAtmsAlongRoute(@RequestParam(value = "pageLength", defaultValue = "50", required = false) int pageLength,
+                                  @RequestParam("polyline") String polyline,
+                                  @RequestParam("width") double width,
+                                  @RequestParam("distanceUnit") final String distanceUnit,
+                                  HttpServletRequest request,
+                                  HttpServletResponse response) throws Exception {
+        final double kmPerUnit = "MILE".equalsIgnoreCase(distanceUnit) ? KM_PER_MILE : 1;
+        final RouteCorridor corridor = RouteCorridor.fromEncodedPolyline(polyline, width * kmPerUnit);
+
+        final List<Point> centers = corridor.getQueryCenters();
+        if (centers.size() > MAX_QUERY_POINTS) {
+            throw new IllegalArgumentException("Route is too long for the requested corridor width.");
+        }
+        logger.debug("querying {} points along a {} km route", centers.size(), corridor.getLengthKm());
+
+        // the admission interceptor charged the first query, the rest of the fan-out is reserved up front
+        // so that the route never fails half way, and charged to the client as well as to upstream
+        String clientId = (String) request.getAttribute(AdmissionInterceptor.CLIENT_ID_ATTRIBUTE);
+        int reserved = centers.size() * MAX_PAGES_PER_POINT - 1;
+        long wait = clientId != null
+                ? admissionController.tryAcquireFanOut(clientId, reserved)
+                : admissionController.tryAcquireUpstream(reserved);
+        if (wait > 0) {
+            throw RateLimitExceededException.retryAfterNanos(wait);
+        }
+        final AtomicInteger queries = new AtomicInteger();
+
+        // all queries of the route use the same version of the dataset, and record only a few queries for it
+        final DatasetReader<RequestMap, ATMLocations> dataset = atmLocationsService.openDataset(null);
+        response.setHeader(DATASET_VERSION_HEADER, String.valueOf(dataset.getVersionNumber()));
+        final AtomicReferenceArray<List<Atm>> results = new AtomicReferenceArray<>(centers.size());
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            // a few workers take the points in turn so one route cannot occupy the whole upstream executor
+            final AtomicInteger next = new AtomicInteger();
+            int workers = Math.min(centers.size(), MAX_CONCURRENT_QUERIES);
+            for (int i = 0; i < workers; i++) {
+                futures.add(upstreamExecutor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws ApiException {
+                        int index;
+                        while ((index = next.getAndIncrement()) < centers.size()) {
+                            try {
+                                results.set(index, queryPoint(dataset, centers.get(index), corridor.getQueryRadiusKm() / kmPerUnit, distanceUnit, queries));
+                            } catch (ApiException | RuntimeException e) {
+                                // stop the other workers, the route fails as a whole
+                                next.set(centers.size());
+                                throw e;
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException ignored) {
+                    // rethrown below, once no worker uses the reader any more
+                }
+            }
+        } finally {
+            dataset.close();
+            // give back the pages that were not needed
+            int unused = reserved - (queries.get() - 1);
+            if (clientId != null) {
+                admissionController.releaseFanOut(clientId, unused);
+            } else {
+                admissionController.releaseUpstream(unused);
+            }
+        }
+        for (Future<Void> future : futures) {
+            getResult(future);
+        }
+
+        // merge the results, dropping duplicates returned by overlapping queries
+        Map<String, Atm> matches = new LinkedHashMap<>();
+        final Map<Atm, Double> offsets = new LinkedHashMap<>();
+        for (int i = 0; i < results.length(); i++) {
+            for (Atm atm : results.get(i)) {
+                Point point = atm.getLocation().getPoint();
+                String key = atm.getLocation().getName() + "|" + point.getLatitude() + "|" + point.getLongitude();
+                if (matches.containsKey(key)) {
+                    continue;
+                }
+
+                RouteCorridor.Position position = corridor.locate(point.getLatitude(), point.getLongitude());
+                if (position == null) {
+                    continue;
+                }
+
+                atm.getLocation().setDistance(Math.round(position.getDistanceKm() / kmPerUnit * 100) / 100.0);
+                matches.put(key, atm);
+                offsets.put(atm, position.getOffsetKm());
+            }
+        }
+
+        List<Atm> atmList = new ArrayList<>(matches.values());
+        Collections.sort(atmList, new Comparator<Atm>() {
+            @Override
+            public int compare(Atm a, Atm b) {
+                return Double.compare(offsets.get(a), offsets.get(b));
+            }
+        });
+
+        Atms atms = new Atms();
+        atms.setPageOffset(0);
+        atms.setTotalCount(atmList.size());
+        atms.setAtm(atmList.size() > pageLength ? new ArrayList<>(atmList.subList(0, pageLength)) : atmList);
+
+        return atms;
+    }
+
+    /**
+     * Pages through the ATMs within the radius of a query point, up to {@link #MAX_PAGES_PER_POINT} pages.
+     */
+    private List<Atm> queryPoint(DatasetReader<RequestMap, ATMLocations> dataset, Point center, double radius, String distanceUnit,
+                                 AtomicInteger queries) throws ApiException {
+        List<Atm> atmList = new ArrayList<>();
+        int offset = 0;
+        for (int page = 0; page < MAX_PAGES_PER_POINT; page++) {
+            RequestMap map = new RequestMap();
+            map.put("PageOffset", offset);
+            map.put("PageLength", PAGE_LENGTH_PER_POINT);
+            map.put("Latitude", center.getLatitude());
+            map.put("Longitude", center.getLongitude());
+            map.put("DistanceUnit", distanceUnit);
+            map.put("Radius", radius);
+
+            queries.incrementAndGet();
+            Atms atms = atmLocationsService.getAtms(dataset, map, null);
+            if (atms.getAtm() == null || atms.getAtm().isEmpty()) {
+                break;
+            }
+            atmList.addAll(atms.getAtm());
+            offset += atms.getAtm().size();
+            if (atms.getTotalCount() == null || offset >= atms.getTotalCount()) {
+                break;
+            }
+        }
+        return atmList;
+    }
+
+    private static <T> T getResult(Future<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
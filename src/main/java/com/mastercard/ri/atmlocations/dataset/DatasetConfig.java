@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.dataset;
+
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.locations.ATMLocations;
+import com.mastercard.ri.atmlocations.admission.AdmissionController;
+import com.mastercard.ri.atmlocations.hedging.UpstreamHedger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.PropertySource;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@PropertySource("dataset.properties")
+public class DatasetConfig {
+    private static final Logger logger = LoggerFactory.getLogger(DatasetConfig.class);
+
+    // a route of its own, so that refreshes do not skew the hedging delay of interactive queries
+    private static final String REFRESH_ROUTE = "ATMLocations.refresh";
+
+    // how long a refresh query waits for spare upstream budget before the refresh gives up
+    private static final long MAX_BUDGET_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${dataset.enabled}")
+    private boolean enabled;
+
+    @Value("${dataset.refresh.interval.seconds}")
+    private long refreshInterval;
+
+    @Value("${dataset.max.entries}")
+    private int maxEntries;
+
+    @Value("${dataset.max.entries.per.request}")
+    private int maxEntriesPerRequest;
+
+    @Value("${dataset.refresh.upstream.reserve}")
+    private int upstreamReserve;
+
+    @Autowired
+    private AdmissionController admissionController;
+
+    @Autowired
+    private UpstreamHedger upstreamHedger;
+
+    @Bean
+    public VersionedDataset<RequestMap, ATMLocations> atmDataset() {
+        VersionedDataset.Loader<RequestMap, ATMLocations> loader = new VersionedDataset.Loader<RequestMap, ATMLocations>() {
+            @Override
+            public ATMLocations load(final RequestMap query) throws Exception {
+                // refreshes only use the budget requests leave above the reserve; while requests keep
+                // it below, the remaining queries are left to the next refresh
+                long deadline = System.nanoTime() + MAX_BUDGET_WAIT_NANOS;
+                long wait;
+                while ((wait = admissionController.tryAcquireSpareUpstream(1, upstreamReserve)) > 0) {
+                    if (System.nanoTime() + wait - deadline > 0) {
+                        return null;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(wait);
+                    } catch (InterruptedException e) {
+                        // shutting down, let the remaining loads fail fast
+                        Thread.currentThread().interrupt();
+                        throw e;
+                    }
+                }
+                return upstreamHedger.call(REFRESH_ROUTE, new Callable<ATMLocations>() {
+                    @Override
+                    public ATMLocations call() throws Exception {
+                        return ATMLocations.query(query);
+                    }
+                });
+            }
+        };
+        // when disabled no queries are recorded and every version stays empty
+        return new VersionedDataset<>(loader, enabled ? maxEntries : 0, maxEntriesPerRequest, TimeUnit.SECONDS.toMillis(refreshInterval));
+    }
+
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService datasetRefreshExecutor() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        if (enabled) {
+            final VersionedDataset<RequestMap, ATMLocations> dataset = atmDataset();
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        dataset.refresh();
+                    } catch (RuntimeException e) {
+                        // keep the schedule, the next refresh starts from the current version
+                        logger.error("Refreshing the ATM dataset failed", e);
+                    }
+                }
+            }, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+        }
+        return executor;
+    }
+}
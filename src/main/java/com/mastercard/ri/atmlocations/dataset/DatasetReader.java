@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+
+package com.mastercard.ri.atmlocations.dataset;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single request's view of the dataset: one pinned version, and a limited number of queries
+ * the request may record for the next version. Close it to unpin the version.
+ */
+public class DatasetReader<Q, V> implements AutoCloseable {
+    private final AtomicInteger recorded = new AtomicInteger();
+    private final VersionedDataset<Q, V> dataset;
+    private final DatasetVersion<V> version;
+    private final int maxRecorded;
+
+    DatasetReader(VersionedDataset<Q, V> dataset, DatasetVersion<V> version, int maxRecorded) {
+        this.dataset = dataset;
+        this.version = version;
+        this.maxRecorded = maxRecorded;
+    }
+
+    public V get(String key) {
+        return version.get(key);
+    }
+
+    public long getVersionNumber() {
+        return version.getNumber();
+    }
+
+    /**
+     * Records the query unless this reader already recorded as many as it may.
+     */
+    public void request(String key, Q query) {
+        if (recorded.incrementAndGet() <= maxRecorded) {
+            dataset.request(key, query);
+        }
+    }
+
+    /**
+     * Records the query together with a result the caller just fetched, so that the next version
+     * takes it instead of loading it again. Counts like {@link #request(String, Object)}.
+     */
+    public void offer(String key, Q query, V value) {
+        if (recorded.incrementAndGet() <= maxRecorded) {
+            dataset.offer(key, query, value);
+        }
+    }
+
+    @Override
+    public void close() {
+        version.unpin();
+    }
+}
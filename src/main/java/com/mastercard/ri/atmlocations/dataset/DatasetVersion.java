@@ -0,0 +1,122 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.dataset;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable version of a {@link VersionedDataset}.
+ * <p>
+ * Readers {@link VersionedDataset#pin() pin} a version for the duration of a request and
+ * {@link #unpin()} it when done. The dataset holds one pin on its current version, so a version
+ * is released once it has been replaced and its last reader unpinned it.
+ */
+public class DatasetVersion<V> {
+    private final AtomicInteger pins = new AtomicInteger(1);
+    private final long number;
+    private final long createdMillis;
+    private final Map<String, Entry<V>> entries;
+    private final long estimatedBytes;
+    private final VersionedDataset<?, V> dataset;
+
+    DatasetVersion(long number, long createdMillis, Map<String, Entry<V>> entries, long estimatedBytes, VersionedDataset<?, V> dataset) {
+        this.number = number;
+        this.createdMillis = createdMillis;
+        this.entries = entries;
+        this.estimatedBytes = estimatedBytes;
+        this.dataset = dataset;
+    }
+
+    public V get(String key) {
+        Entry<V> entry = entries.get(key);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    Entry<V> getEntry(String key) {
+        return entries.get(key);
+    }
+
+    public long getNumber() {
+        return number;
+    }
+
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+
+    public void unpin() {
+        if (pins.decrementAndGet() == 0) {
+            dataset.released(this);
+        }
+    }
+
+    /**
+     * Returns false if the version was already released.
+     */
+    boolean pin() {
+        while (true) {
+            int current = pins.get();
+            if (current == 0) {
+                return false;
+            }
+            if (pins.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * A result and the time it was fetched from upstream.
+     */
+    static final class Entry<V> {
+        private final V value;
+        private final long loadedMillis;
+
+        Entry(V value, long loadedMillis) {
+            this.value = value;
+            this.loadedMillis = loadedMillis;
+        }
+
+        V getValue() {
+            return value;
+        }
+
+        long getLoadedMillis() {
+            return loadedMillis;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.dataset;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A copy-on-write dataset of query results.
+ * <p>
+ * Queries that readers {@link #request(String, Object) request} are loaded by the next
+ * {@link #refresh()} into a new {@link DatasetVersion}, which is then published with a single
+ * reference swap. Readers never block on a refresh and see one consistent version while pinned.
+ * Queries that were not requested since the previous refresh are dropped from the next version.
+ * Results that readers {@link #offer(String, Object, Object) offer} and results younger than the
+ * maximum age are taken over as they are, only the others are loaded again.
+ */
+@ManagedResource
+public class VersionedDataset<Q, V> {
+    private static final Logger logger = LoggerFactory.getLogger(VersionedDataset.class);
+
+    public interface Loader<Q, V> {
+        /**
+         * Returns null if the query cannot be loaded now, e.g. for lack of upstream budget; the
+         * refresh then stops loading and keeps the remaining results for the next one.
+         */
+        V load(Q query) throws Exception;
+    }
+
+    // the oldest results are loaded first, so that deferred ones are not deferred again
+    private static final Comparator<Stale<?, ?>> OLDEST_FIRST = new Comparator<Stale<?, ?>>() {
+        @Override
+        public int compare(Stale<?, ?> a, Stale<?, ?> b) {
+            return Long.compare(a.loadedMillis(), b.loadedMillis());
+        }
+    };
+
+    private final AtomicReference<DatasetVersion<V>> current = new AtomicReference<>();
+    private final Set<DatasetVersion<V>> retired = Collections.newSetFromMap(new ConcurrentHashMap<DatasetVersion<V>, Boolean>());
+    private final AtomicReference<Pending<Q, V>> pending = new AtomicReference<>(new Pending<Q, V>());
+    private final AtomicLong refreshFailures = new AtomicLong();
+    private final AtomicLong refreshDeferrals = new AtomicLong();
+    private volatile long lastRefreshMillis = -1;
+    private DatasetVersion<V> lastReplaced;
+
+    private final Loader<Q, V> loader;
+    private final int maxEntries;
+    private final int maxEntriesPerReader;
+    private final long maxAgeMillis;
+
+    /**
+     * @param maxEntriesPerReader the number of queries a single {@link DatasetReader} may record.
+     * @param maxAgeMillis        the age from which a result is loaded again by a refresh.
+     */
+    public VersionedDataset(Loader<Q, V> loader, int maxEntries, int maxEntriesPerReader, long maxAgeMillis) {
+        this.loader = loader;
+        this.maxEntries = maxEntries;
+        this.maxEntriesPerReader = maxEntriesPerReader;
+        this.maxAgeMillis = maxAgeMillis;
+        current.set(new DatasetVersion<>(0, System.currentTimeMillis(), Collections.<String, DatasetVersion.Entry<V>>emptyMap(), 0, this));
+    }
+
+    /**
+     * Pins the current version; the caller has to {@link DatasetVersion#unpin() unpin} it.
+     */
+    public DatasetVersion<V> pin() {
+        while (true) {
+            DatasetVersion<V> version = current.get();
+            if (version.pin()) {
+                return version;
+            }
+            // replaced and drained since it was read, the next read returns its successor
+        }
+    }
+
+    /**
+     * Pins the version with the given number if it is still available, otherwise the current version.
+     * Besides versions pinned by readers, the version replaced by the last refresh is kept available.
+     */
+    public DatasetVersion<V> pin(long number) {
+        DatasetVersion<V> version = pin();
+        if (version.getNumber() == number) {
+            return version;
+        }
+        for (DatasetVersion<V> replaced : retired) {
+            if (replaced.getNumber() == number && replaced.pin()) {
+                version.unpin();
+                return replaced;
+            }
+        }
+        return version;
+    }
+
+    /**
+     * Opens a reader of the version with the given number, or of the current version if the number
+     * is null or no longer available.
+     */
+    public DatasetReader<Q, V> open(Long number) {
+        return new DatasetReader<>(this, number != null ? pin(number) : pin(), maxEntriesPerReader);
+    }
+
+    /**
+     * Records that the query is in use, so that the next version contains its result.
+     */
+    public void request(String key, Q query) {
+        record(pending.get(), key, query);
+    }
+
+    /**
+     * Records that the query is in use together with a result that was just fetched for it, so that
+     * the next version contains that result without loading it again.
+     */
+    public void offer(String key, Q query, V value) {
+        Pending<Q, V> next = pending.get();
+        if (record(next, key, query)) {
+            next.loaded.put(key, new DatasetVersion.Entry<>(value, System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Publishes the queries requested since the previous refresh as the next version. Offered results
+     * and results younger than the maximum age are taken over, the others are loaded oldest first.
+     * Results that fail to load or that the loader defers are carried over from the current version.
+     * Refreshes run one at a time, a refresh started through JMX waits for the scheduled one.
+     */
+    @ManagedOperation(description = "Builds and publishes the next version")
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        Pending<Q, V> next = pending.getAndSet(new Pending<Q, V>());
+        DatasetVersion<V> previous = current.get();
+        long now = System.currentTimeMillis();
+
+        Map<String, DatasetVersion.Entry<V>> entries = new HashMap<>(next.queries.size() * 4 / 3 + 1);
+        List<Stale<Q, V>> stale = new ArrayList<>();
+        for (Map.Entry<String, Q> query : next.queries.entrySet()) {
+            DatasetVersion.Entry<V> entry = next.loaded.get(query.getKey());
+            DatasetVersion.Entry<V> old = previous.getEntry(query.getKey());
+            if (entry == null && old != null && now - old.getLoadedMillis() < maxAgeMillis) {
+                entry = old;
+            }
+            if (entry != null) {
+                entries.put(query.getKey(), entry);
+            } else {
+                stale.add(new Stale<>(query.getKey(), query.getValue(), old));
+            }
+        }
+
+        Collections.sort(stale, OLDEST_FIRST);
+        int loaded = 0;
+        int deferred = 0;
+        for (Stale<Q, V> query : stale) {
+            DatasetVersion.Entry<V> entry = query.old;
+            if (deferred == 0) {
+                try {
+                    V value = loader.load(query.query);
+                    if (value != null) {
+                        entry = new DatasetVersion.Entry<>(value, System.currentTimeMillis());
+                        loaded++;
+                    } else {
+                        deferred++;
+                    }
+                } catch (Exception e) {
+                    refreshFailures.incrementAndGet();
+                    logger.debug("Loading {} failed", query.key, e);
+                }
+            } else {
+                deferred++;
+            }
+
+            if (entry != null) {
+                entries.put(query.key, entry);
+            }
+        }
+        refreshDeferrals.addAndGet(deferred);
+
+        long bytes = 0;
+        for (Map.Entry<String, DatasetVersion.Entry<V>> entry : entries.entrySet()) {
+            bytes += estimateBytes(entry.getKey()) + estimateBytes(entry.getValue().getValue());
+        }
+
+        publish(new DatasetVersion<>(previous.getNumber() + 1, System.currentTimeMillis(), Collections.unmodifiableMap(entries), bytes, this));
+        lastRefreshMillis = (System.nanoTime() - start) / 1000000;
+        logger.info("Published dataset version {} with {} entries ({} loaded, {} deferred, ~{} bytes) in {} ms",
+                previous.getNumber() + 1, entries.size(), loaded, deferred, bytes, lastRefreshMillis);
+    }
+
+    @ManagedAttribute(description = "Number of the current version")
+    public long getVersion() {
+        return current.get().getNumber();
+    }
+
+    @ManagedAttribute(description = "Milliseconds since the current version was published")
+    public long getVersionAgeMillis() {
+        return System.currentTimeMillis() - current.get().getCreatedMillis();
+    }
+
+    @ManagedAttribute(description = "Entries in the current version")
+    public int getVersionEntries() {
+        return current.get().size();
+    }
+
+    @ManagedAttribute(description = "Estimated memory of the current version in bytes")
+    public long getVersionBytes() {
+        return current.get().getEstimatedBytes();
+    }
+
+    @ManagedAttribute(description = "Replaced versions still kept or pinned by readers")
+    public int getRetiredVersions() {
+        return retired.size();
+    }
+
+    @ManagedAttribute(description = "Estimated memory of replaced versions still kept or pinned by readers in bytes")
+    public long getRetiredVersionBytes() {
+        long bytes = 0;
+        for (DatasetVersion<V> version : retired) {
+            bytes += version.getEstimatedBytes();
+        }
+        return bytes;
+    }
+
+    @ManagedAttribute(description = "Duration of the last refresh in milliseconds, -1 before the first refresh")
+    public long getLastRefreshMillis() {
+        return lastRefreshMillis;
+    }
+
+    @ManagedAttribute(description = "Queries that failed to load during refreshes")
+    public long getRefreshFailures() {
+        return refreshFailures.get();
+    }
+
+    @ManagedAttribute(description = "Queries whose loading was deferred to a later refresh")
+    public long getRefreshDeferrals() {
+        return refreshDeferrals.get();
+    }
+
+    void released(DatasetVersion<V> version) {
+        retired.remove(version);
+        logger.debug("Released dataset version {}", version.getNumber());
+    }
+
+    /**
+     * Returns whether the query is recorded for the next version.
+     */
+    private boolean record(Pending<Q, V> next, String key, Q query) {
+        if (next.queries.size() < maxEntries) {
+            next.queries.putIfAbsent(key, query);
+        }
+        return next.queries.containsKey(key);
+    }
+
+    private void publish(DatasetVersion<V> version) {
+        DatasetVersion<V> replaced = current.getAndSet(version);
+        retired.add(replaced);
+        // the dataset keeps its pin on the replaced version until the next refresh, so that paging
+        // clients can finish on it; readers still holding older versions keep them alive
+        if (lastReplaced != null) {
+            lastReplaced.unpin();
+        }
+        lastReplaced = replaced;
+    }
+
+    /**
+     * Roughly estimates the heap used by a tree of maps, collections, strings and boxed values,
+     * assuming compressed references.
+     */
+    static long estimateBytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return 40 + 2L * ((String) value).length();
+        }
+        if (value instanceof Map) {
+            long bytes = 48;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                bytes += 40 + estimateBytes(entry.getKey()) + estimateBytes(entry.getValue());
+            }
+            return bytes;
+        }
+        if (value instanceof Collection) {
+            long bytes = 24;
+            for (Object item : (Collection<?>) value) {
+                bytes += 4 + estimateBytes(item);
+            }
+            return bytes;
+        }
+        return 16;
+    }
+
+    /**
+     * The queries recorded for the next version and the results offered for them.
+     */
+    private static final class Pending<Q, V> {
+        final ConcurrentMap<String, Q> queries = new ConcurrentHashMap<>();
+        final ConcurrentMap<String, DatasetVersion.Entry<V>> loaded = new ConcurrentHashMap<>();
+    }
+
+    private static final class Stale<Q, V> {
+        final String key;
+        final Q query;
+        final DatasetVersion.Entry<V> old;
+
+        Stale(String key, Q query, DatasetVersion.Entry<V> old) {
+            this.key = key;
+            this.query = query;
+            this.old = old;
+        }
+
+        long loadedMillis() {
+            return old != null ? old.getLoadedMillis() : Long.MIN_VALUE;
+        }
+    }
+}
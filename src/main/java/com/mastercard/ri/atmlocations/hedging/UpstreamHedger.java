@@ -0,0 +1,258 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.hedging;
+
+import com.mastercard.ri.atmlocations.admission.AdmissionController;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Issues hedged upstream requests to cut tail latency.
+ * <p>
+ * If a call has not completed once the observed latency percentile of its route has elapsed,
+ * an identical second call is issued, the first one to succeed is used and the other one is
+ * cancelled. Each request adds {@code budgetPercent / 100} of a hedge to a small budget and each
+ * hedge spends one, so hedges never exceed the configured share of traffic. A hedge also takes a
+ * token from the upstream budget of the {@link AdmissionController} and is skipped if none is left.
+ * When all executor threads are busy the call is made on the calling thread and hedges are skipped.
+ */
+@ManagedResource
+public class UpstreamHedger {
+    private static final long BUDGET_SCALE = 1000;
+    private static final long MAX_BUDGET = 10 * BUDGET_SCALE;
+
+    private final ConcurrentMap<String, LatencyTracker> trackers = new ConcurrentHashMap<>();
+    private final AtomicLong budget = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong hedgesIssued = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong hedgesRejected = new AtomicLong();
+
+    private final ExecutorService executor;
+    private final AdmissionController admissionController;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long budgetPerRequest;
+
+    public UpstreamHedger(ExecutorService executor, AdmissionController admissionController, boolean enabled,
+                          double percentile, long minDelayMillis, double budgetPercent) {
+        this.executor = executor;
+        this.admissionController = admissionController;
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMillis);
+        this.budgetPerRequest = Math.round(budgetPercent / 100 * BUDGET_SCALE);
+    }
+
+    public <T> T call(String route, Callable<T> callable) throws Exception {
+        if (!enabled) {
+            return callable.call();
+        }
+
+        requests.incrementAndGet();
+        addBudget();
+
+        LatencyTracker tracker = getTracker(route);
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executor);
+        Future<T> primary;
+        try {
+            primary = completionService.submit(timed(callable, tracker));
+        } catch (RejectedExecutionException e) {
+            return timed(callable, tracker).call();
+        }
+        Future<T> hedge = null;
+
+        try {
+            Future<T> first = null;
+            long threshold = tracker.getPercentileNanos();
+            if (threshold >= 0) {
+                first = completionService.poll(Math.max(threshold, minDelayNanos), TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    hedge = tryHedge(completionService, timed(callable, tracker));
+                }
+            }
+            if (first == null) {
+                first = completionService.take();
+            }
+
+            try {
+                return getResult(first, hedge);
+            } catch (ExecutionException e) {
+                if (hedge == null) {
+                    throw unwrap(e);
+                }
+
+                // the other call may still succeed
+                try {
+                    return getResult(completionService.take(), hedge);
+                } catch (ExecutionException ignored) {
+                    throw unwrap(e);
+                }
+            }
+        } finally {
+            primary.cancel(true);
+            if (hedge != null) {
+                hedge.cancel(true);
+            }
+        }
+    }
+
+    @ManagedAttribute(description = "Requests made while hedging is enabled")
+    public long getRequests() {
+        return requests.get();
+    }
+
+    @ManagedAttribute(description = "Hedged requests issued")
+    public long getHedgesIssued() {
+        return hedgesIssued.get();
+    }
+
+    @ManagedAttribute(description = "Hedged requests that completed before the original request")
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    @ManagedAttribute(description = "Hedges skipped because all hedging threads were busy")
+    public long getHedgesRejected() {
+        return hedgesRejected.get();
+    }
+
+    @ManagedAttribute(description = "Hedges the budget currently allows")
+    public double getHedgeBudget() {
+        return (double) budget.get() / BUDGET_SCALE;
+    }
+
+    @ManagedAttribute(description = "Whether hedging is enabled")
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    void record(String route, long nanos) {
+        getTracker(route).record(nanos);
+    }
+
+    /**
+     * Issues the hedge if both budgets allow it and a thread is free, otherwise returns null
+     * without spending either budget.
+     */
+    private <T> Future<T> tryHedge(CompletionService<T> completionService, Callable<T> callable) {
+        if (!tryAcquireBudget()) {
+            return null;
+        }
+        if (admissionController.tryAcquireUpstream(1) > 0) {
+            budget.addAndGet(BUDGET_SCALE);
+            return null;
+        }
+
+        try {
+            Future<T> hedge = completionService.submit(callable);
+            hedgesIssued.incrementAndGet();
+            return hedge;
+        } catch (RejectedExecutionException e) {
+            budget.addAndGet(BUDGET_SCALE);
+            admissionController.releaseUpstream(1);
+            hedgesRejected.incrementAndGet();
+            return null;
+        }
+    }
+
+    private <T> T getResult(Future<T> future, Future<T> hedge) throws ExecutionException, InterruptedException {
+        T result = future.get();
+        if (future == hedge) {
+            hedgesWon.incrementAndGet();
+        }
+        return result;
+    }
+
+    private LatencyTracker getTracker(String route) {
+        LatencyTracker tracker = trackers.get(route);
+        if (tracker == null) {
+            LatencyTracker created = new LatencyTracker(percentile);
+            tracker = trackers.putIfAbsent(route, created);
+            if (tracker == null) {
+                tracker = created;
+            }
+        }
+        return tracker;
+    }
+
+    private void addBudget() {
+        while (true) {
+            long current = budget.get();
+            long updated = Math.min(MAX_BUDGET, current + budgetPerRequest);
+            if (updated == current || budget.compareAndSet(current, updated)) {
+                return;
+            }
+        }
+    }
+
+    private boolean tryAcquireBudget() {
+        while (true) {
+            long current = budget.get();
+            if (current < BUDGET_SCALE) {
+                return false;
+            }
+            if (budget.compareAndSet(current, current - BUDGET_SCALE)) {
+                return true;
+            }
+        }
+    }
+
+    private static <T> Callable<T> timed(final Callable<T> callable, final LatencyTracker tracker) {
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                long start = System.nanoTime();
+                T result = callable.call();
+                tracker.record(System.nanoTime() - start);
+                return result;
+            }
+        };
+    }
+
+    private static Exception unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return cause instanceof Exception ? (Exception) cause : e;
+    }
+}
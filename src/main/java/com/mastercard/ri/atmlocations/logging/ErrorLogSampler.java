@@ -0,0 +1,219 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.logging;
+
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rate limits repeated identical errors. The first occurrence of an error key within a sampling
+ * window is logged in full; further occurrences are only counted. The count is reported with the
+ * next logged occurrence once the window has elapsed, or by a periodic flush if none follows.
+ * <p>
+ * Keys should identify the kind of error, not the individual occurrence. The least recently seen
+ * key is evicted, and its count reported, once {@link #MAX_TRACKED_KEYS} keys are tracked.
+ */
+@Component
+public class ErrorLogSampler {
+    static final int MAX_TRACKED_KEYS = 1024;
+
+    /**
+     * Access ordered, so the first entry is the least recently seen key. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Window> windows = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final long windowMillis;
+    private ScheduledExecutorService flusher;
+
+    @Autowired
+    public ErrorLogSampler(@Value("${logging.errors.sample.window.millis:60000}") long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "error-log-sampler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        flusher.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush(System.currentTimeMillis());
+            }
+        }, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        flush(Long.MAX_VALUE);
+    }
+
+    /**
+     * Logs {@code message} with the stack trace of {@code ex} unless an error with the same key
+     * has already been logged within the current window.
+     */
+    public void error(Logger logger, String key, String message, Throwable ex) {
+        long suppressed = sample(key, System.currentTimeMillis(), logger, message, true);
+        if (suppressed == 0) {
+            logger.error(message, ex);
+        } else if (suppressed > 0) {
+            logger.error(message + " (" + suppressed + " similar errors suppressed)", ex);
+        }
+    }
+
+    /**
+     * Same as {@link #error(Logger, String, String, Throwable)} but without a stack trace, for
+     * errors caused by client input where the trace adds nothing.
+     */
+    public void warn(Logger logger, String key, String message) {
+        long suppressed = sample(key, System.currentTimeMillis(), logger, message, false);
+        if (suppressed == 0) {
+            logger.warn(message);
+        } else if (suppressed > 0) {
+            logger.warn(message + " (" + suppressed + " similar errors suppressed)");
+        }
+    }
+
+    /**
+     * Returns -1 if the occurrence should be suppressed, otherwise the number of occurrences
+     * suppressed since the key was last logged.
+     */
+    long sample(String key, long now, Logger logger, String message, boolean error) {
+        Window evicted = null;
+        long result;
+        synchronized (windows) {
+            Window window = windows.get(key);
+            if (window == null) {
+                if (windows.size() >= MAX_TRACKED_KEYS) {
+                    Iterator<Window> eldest = windows.values().iterator();
+                    evicted = eldest.next();
+                    eldest.remove();
+                }
+                window = new Window(now);
+                windows.put(key, window);
+                result = 0;
+            } else if (now - window.start >= windowMillis) {
+                result = window.suppressed;
+                window.start = now;
+                window.suppressed = 0;
+            } else {
+                window.suppressed++;
+                result = -1;
+            }
+            window.logger = logger;
+            window.message = message;
+            window.error = error;
+        }
+
+        if (evicted != null) {
+            evicted.report(evicted.suppressed);
+        }
+        return result;
+    }
+
+    /**
+     * Reports the counts of windows that have elapsed without a further occurrence, and forgets
+     * keys that were not seen during their last window.
+     */
+    void flush(long now) {
+        List<Window> elapsed = new ArrayList<>();
+        List<Long> counts = new ArrayList<>();
+        synchronized (windows) {
+            for (Iterator<Window> i = windows.values().iterator(); i.hasNext(); ) {
+                Window window = i.next();
+                if (now - window.start < windowMillis) {
+                    continue;
+                }
+                if (window.suppressed == 0) {
+                    i.remove();
+                } else {
+                    elapsed.add(window);
+                    counts.add(window.suppressed);
+                    window.start = now;
+                    window.suppressed = 0;
+                }
+            }
+        }
+
+        for (int i = 0; i < elapsed.size(); i++) {
+            elapsed.get(i).report(counts.get(i));
+        }
+    }
+
+    int getTrackedKeys() {
+        synchronized (windows) {
+            return windows.size();
+        }
+    }
+
+    private static class Window {
+        long start;
+        long suppressed;
+        Logger logger;
+        String message;
+        boolean error;
+
+        Window(long start) {
+            this.start = start;
+        }
+
+        void report(long count) {
+            if (count == 0 || logger == null) {
+                return;
+            }
+            String summary = message + " (" + count + " similar errors suppressed)";
+            if (error) {
+                logger.error(summary);
+            } else {
+                logger.warn(summary);
+            }
+        }
+    }
+}
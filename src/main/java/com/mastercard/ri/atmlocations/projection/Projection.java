@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.projection;
+
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A compiled set of response fields, e.g. {@code totalCount,atm.location.point}.
+ * <p>
+ * Instances are immutable and shared between requests, see {@link ProjectionCompiler}.
+ */
+public class Projection {
+    private final List<Property> properties;
+
+    Projection(List<Property> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns whether the given dot-separated path, any of its parents or any of its children are
+     * part of the projection, i.e. whether the value at the path needs to be mapped.
+     */
+    public boolean includes(String path) {
+        Projection projection = this;
+        for (String name : path.split("\\.")) {
+            Property property = projection.getProperty(name);
+            if (property == null) {
+                return false;
+            }
+            if (property.children == null) {
+                return true;
+            }
+            projection = property.children;
+        }
+        return true;
+    }
+
+    /**
+     * Copies the projected fields of the given model into maps that serialize to the same JSON.
+     */
+    public Map<String, Object> apply(Object bean) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (Property property : properties) {
+            Object value = property.accessor.getValue(bean);
+            result.put(property.name, property.children == null || value == null ? value : property.children.applyToValue(value));
+        }
+        return result;
+    }
+
+    private Object applyToValue(Object value) {
+        if (!(value instanceof Collection)) {
+            return apply(value);
+        }
+
+        Collection<?> values = (Collection<?>) value;
+        List<Object> result = new ArrayList<>(values.size());
+        for (Object item : values) {
+            result.add(item == null ? null : apply(item));
+        }
+        return result;
+    }
+
+    private Property getProperty(String name) {
+        for (Property property : properties) {
+            if (property.name.equals(name)) {
+                return property;
+            }
+        }
+        return null;
+    }
+
+    static class Property {
+        private final String name;
+        private final AnnotatedMember accessor;
+        private final Projection children;
+
+        /**
+         * @param children the projection of the nested fields, or null to include the whole value.
+         */
+        Property(String name, AnnotatedMember accessor, Projection children) {
+            this.name = name;
+            this.accessor = accessor;
+            this.children = children;
+        }
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.projection;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.AnnotatedMember;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compiles {@code fields} request parameters into {@link Projection}s.
+ * <p>
+ * Field names are validated against the JSON properties of the generated model, which is
+ * generated from the definitions in api.yaml. Compiled projections are cached per distinct
+ * field set, regardless of the order or duplicates in the parameter. The least recently used
+ * field set is evicted once {@link #MAX_CACHED_PROJECTIONS} are cached.
+ */
+@Component
+public class ProjectionCompiler {
+    static final int MAX_CACHED_PROJECTIONS = 256;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    /**
+     * Access ordered, so the first entry is the least recently used field set. Guarded by itself.
+     */
+    private final LinkedHashMap<String, Projection> projections = new LinkedHashMap<>(16, 0.75f, true);
+
+    public Projection compile(Class<?> type, String fields) {
+        SortedSet<String> paths = new TreeSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.trim().isEmpty()) {
+                paths.add(field.trim());
+            }
+        }
+        if (paths.isEmpty()) {
+            throw new InvalidFieldsException("At least one field is required.");
+        }
+
+        String key = type.getName() + paths;
+        Projection projection;
+        synchronized (projections) {
+            projection = projections.get(key);
+        }
+        if (projection == null) {
+            projection = compile(type, toTree(paths), "");
+
+            synchronized (projections) {
+                if (!projections.containsKey(key) && projections.size() >= MAX_CACHED_PROJECTIONS) {
+                    Iterator<Projection> eldest = projections.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+                projections.put(key, projection);
+            }
+        }
+        return projection;
+    }
+
+    int getCachedProjections() {
+        synchronized (projections) {
+            return projections.size();
+        }
+    }
+
+    /**
+     * Nests the paths by name. A null value includes the whole value of the field.
+     */
+    private static Map<String, Object> toTree(SortedSet<String> paths) {
+        Map<String, Object> tree = new TreeMap<>();
+        for (String path : paths) {
+            Map<String, Object> node = tree;
+            String[] names = path.split("\\.", -1);
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].isEmpty()) {
+                    throw new InvalidFieldsException("Invalid field '" + path + "'.");
+                }
+                if (i == names.length - 1) {
+                    node.put(names[i], null);
+                    break;
+                }
+                if (node.containsKey(names[i]) && node.get(names[i]) == null) {
+                    // a parent is already included as a whole
+                    break;
+                }
+                Map<String, Object> child = (Map<String, Object>) node.get(names[i]);
+                if (child == null) {
+                    child = new TreeMap<>();
+                    node.put(names[i], child);
+                }
+                node = child;
+            }
+        }
+        return tree;
+    }
+
+    private Projection compile(Class<?> type, Map<String, Object> tree, String prefix) {
+        for (String name : tree.keySet()) {
+            if (findProperty(type, name) == null) {
+                throw new InvalidFieldsException("Unknown field '" + prefix + name + "'.");
+            }
+        }
+
+        // keep the order of the properties in the full response
+        List<Projection.Property> properties = new ArrayList<>(tree.size());
+        for (BeanPropertyDefinition definition : getProperties(type)) {
+            if (!tree.containsKey(definition.getName())) {
+                continue;
+            }
+
+            String name = definition.getName();
+            AnnotatedMember accessor = definition.getAccessor();
+            Map<String, Object> children = (Map<String, Object>) tree.get(name);
+            Projection projection = null;
+
+            if (children != null) {
+                JavaType valueType = accessor.getType();
+                if (valueType.isContainerType()) {
+                    valueType = valueType.getContentType();
+                }
+                if (!isModel(valueType.getRawClass(), type)) {
+                    throw new InvalidFieldsException("Field '" + prefix + name + "' has no nested fields.");
+                }
+                projection = compile(valueType.getRawClass(), children, prefix + name + ".");
+            }
+            properties.add(new Projection.Property(name, accessor, projection));
+        }
+        return new Projection(properties);
+    }
+
+    private BeanPropertyDefinition findProperty(Class<?> type, String name) {
+        for (BeanPropertyDefinition definition : getProperties(type)) {
+            if (definition.getName().equals(name)) {
+                return definition;
+            }
+        }
+        return null;
+    }
+
+    private List<BeanPropertyDefinition> getProperties(Class<?> type) {
+        List<BeanPropertyDefinition> properties = new ArrayList<>();
+        for (BeanPropertyDefinition definition : mapper.getSerializationConfig().introspect(mapper.constructType(type)).findProperties()) {
+            if (definition.couldSerialize() && definition.getAccessor() != null) {
+                properties.add(definition);
+            }
+        }
+        return properties;
+    }
+
+    private static boolean isModel(Class<?> type, Class<?> root) {
+        return type.getPackage() != null && type.getPackage().equals(root.getPackage());
+    }
+}
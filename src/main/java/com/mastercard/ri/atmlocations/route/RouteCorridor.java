@@ -0,0 +1,340 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.route;
+
+import com.mastercard.ri.atmlocations.generated.model.Point;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A corridor of a given half-width around a route.
+ * <p>
+ * Query centers are spaced along the route so that circles of {@link #getQueryRadiusKm()} cover
+ * the whole corridor, which keeps the number of upstream point queries minimal. Segments are
+ * indexed once into a grid of cells covering the corridor so that locating a candidate only
+ * looks at the segments near it.
+ */
+public class RouteCorridor {
+    private static final double EARTH_RADIUS_KM = 6371.0088;
+    private static final double KM_PER_DEGREE = Math.PI * EARTH_RADIUS_KM / 180;
+    private static final int MAX_INDEX_CELLS_PER_ROUTE = 1000;
+    private static final double MAX_TURN_BETWEEN_CENTERS = Math.toRadians(30);
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final double[] offsets;
+    private final double widthKm;
+
+    private final double cellLat;
+    private final double cellLng;
+    private final Map<Long, List<Integer>> segmentIndex = new HashMap<>();
+
+    public RouteCorridor(double[] latitudes, double[] longitudes, double widthKm) {
+        if (latitudes.length == 0 || latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("Route must contain at least one point.");
+        }
+        if (!(widthKm > 0)) {
+            throw new IllegalArgumentException("Corridor width must be greater than zero.");
+        }
+
+        if (latitudes.length == 1) {
+            latitudes = new double[]{latitudes[0], latitudes[0]};
+            longitudes = new double[]{longitudes[0], longitudes[0]};
+        }
+
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.widthKm = widthKm;
+
+        offsets = new double[latitudes.length];
+        double maxAbsLatitude = Math.abs(latitudes[0]);
+        for (int i = 1; i < latitudes.length; i++) {
+            offsets[i] = offsets[i - 1] + segmentLength(i - 1);
+            maxAbsLatitude = Math.max(maxAbsLatitude, Math.abs(latitudes[i]));
+        }
+
+        // cells must be at least twice the corridor width for a single cell lookup to be enough,
+        // longitude cells are sized at the latitude where they are narrowest
+        double cellKm = Math.max(2 * widthKm, getLengthKm() / MAX_INDEX_CELLS_PER_ROUTE);
+        cellLat = cellKm / KM_PER_DEGREE;
+        cellLng = cellKm / (KM_PER_DEGREE * Math.max(Math.cos(Math.toRadians(Math.min(maxAbsLatitude, 89))), 0.01));
+
+        buildSegmentIndex(cellKm);
+    }
+
+    /**
+     * Creates a corridor from a route in the Google encoded polyline format.
+     */
+    public static RouteCorridor fromEncodedPolyline(String encoded, double widthKm) {
+        double[][] points = decodePolyline(encoded);
+        return new RouteCorridor(points[0], points[1], widthKm);
+    }
+
+    public double getWidthKm() {
+        return widthKm;
+    }
+
+    public double getLengthKm() {
+        return offsets[offsets.length - 1];
+    }
+
+    public double getQueryRadiusKm() {
+        return 2 * widthKm;
+    }
+
+    /**
+     * Returns the deduplicated centers of the point queries covering the corridor.
+     * <p>
+     * With a query radius of {@code 2w} and a spacing of {@code 2 * sqrt(2) * w} every point within
+     * {@code w} of a straight stretch is within {@code sqrt(3) * w} of a center, which leaves some
+     * slack for dropping centers that are almost on top of an earlier one (e.g. where the route loops
+     * back). That does not hold around bends, whose outside can be up to {@code (1 + sqrt(2)) * w}
+     * from the nearest center, so a center is also placed at every vertex where the route has turned
+     * by more than 30 degrees since the previous center, and the spacing restarts from there.
+     */
+    public List<Point> getQueryCenters() {
+        double spacing = 2 * Math.sqrt(2) * widthKm;
+        double duplicateCell = widthKm / 6;
+        double duplicateCellLat = duplicateCell / KM_PER_DEGREE;
+        double duplicateCellLng = duplicateCellLat * cellLng / cellLat;
+
+        List<Point> centers = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+
+        double nextOffset = 0;
+        double heading = Double.NaN;
+        double turned = 0;
+        int last = latitudes.length - 1;
+        for (int i = 0; i < last; i++) {
+            double length = offsets[i + 1] - offsets[i];
+            if (length > 0) {
+                double segmentHeading = heading(i);
+                if (!Double.isNaN(heading)) {
+                    turned += Math.abs(Math.IEEEremainder(segmentHeading - heading, 2 * Math.PI));
+                }
+                heading = segmentHeading;
+            }
+            if (turned > MAX_TURN_BETWEEN_CENTERS && nextOffset > offsets[i]) {
+                addCenter(centers, seen, latitudes[i], longitudes[i], duplicateCellLat, duplicateCellLng);
+                nextOffset = offsets[i] + spacing;
+                turned = 0;
+            }
+
+            while (nextOffset <= offsets[i + 1]) {
+                double t = length > 0 ? (nextOffset - offsets[i]) / length : 0;
+                double latitude = latitudes[i] + t * (latitudes[i + 1] - latitudes[i]);
+                double longitude = longitudes[i] + t * (longitudes[i + 1] - longitudes[i]);
+                addCenter(centers, seen, latitude, longitude, duplicateCellLat, duplicateCellLng);
+                nextOffset += spacing;
+                turned = 0;
+            }
+        }
+        addCenter(centers, seen, latitudes[last], longitudes[last], duplicateCellLat, duplicateCellLng);
+
+        return centers;
+    }
+
+    /**
+     * Returns where along the route the given location is, or {@code null} if it is
+     * outside the corridor.
+     */
+    public Position locate(double latitude, double longitude) {
+        List<Integer> segments = segmentIndex.get(cellKey(latitude, longitude));
+        if (segments == null) {
+            return null;
+        }
+
+        Position nearest = null;
+        for (int segment : segments) {
+            Position position = project(segment, latitude, longitude);
+            if (nearest == null || position.distanceKm < nearest.distanceKm) {
+                nearest = position;
+            }
+        }
+
+        return nearest.distanceKm <= widthKm ? nearest : null;
+    }
+
+    private void addCenter(List<Point> centers, Set<Long> seen, double latitude, double longitude,
+                           double duplicateCellLat, double duplicateCellLng) {
+        long key = key((int) Math.floor(latitude / duplicateCellLat), (int) Math.floor(longitude / duplicateCellLng));
+        if (seen.add(key)) {
+            Point point = new Point();
+            point.setLatitude(latitude);
+            point.setLongitude(longitude);
+            centers.add(point);
+        }
+    }
+
+    private void buildSegmentIndex(double cellKm) {
+        double step = cellKm / 2;
+        for (int segment = 0; segment < latitudes.length - 1; segment++) {
+            int samples = (int) Math.ceil(segmentLength(segment) / step);
+            long lastKey = 0;
+            for (int s = 0; s <= samples; s++) {
+                double t = samples == 0 ? 0 : (double) s / samples;
+                double latitude = latitudes[segment] + t * (latitudes[segment + 1] - latitudes[segment]);
+                double longitude = longitudes[segment] + t * (longitudes[segment + 1] - longitudes[segment]);
+                long key = cellKey(latitude, longitude);
+                if (s > 0 && key == lastKey) {
+                    continue;
+                }
+                lastKey = key;
+
+                // a point within the corridor can be up to two cells away from the nearest sample
+                int row = (int) Math.floor(latitude / cellLat);
+                int column = (int) Math.floor(longitude / cellLng);
+                for (int dRow = -2; dRow <= 2; dRow++) {
+                    for (int dColumn = -2; dColumn <= 2; dColumn++) {
+                        long neighbour = key(row + dRow, column + dColumn);
+                        List<Integer> list = segmentIndex.get(neighbour);
+                        if (list == null) {
+                            list = new ArrayList<>(4);
+                            segmentIndex.put(neighbour, list);
+                        }
+                        if (list.isEmpty() || list.get(list.size() - 1) != segment) {
+                            list.add(segment);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private Position project(int segment, double latitude, double longitude) {
+        double cosLat = Math.cos(Math.toRadians((latitudes[segment] + latitudes[segment + 1]) / 2));
+        double bx = (longitudes[segment + 1] - longitudes[segment]) * cosLat * KM_PER_DEGREE;
+        double by = (latitudes[segment + 1] - latitudes[segment]) * KM_PER_DEGREE;
+        double px = (longitude - longitudes[segment]) * cosLat * KM_PER_DEGREE;
+        double py = (latitude - latitudes[segment]) * KM_PER_DEGREE;
+
+        double lengthSquared = bx * bx + by * by;
+        double t = lengthSquared > 0 ? Math.max(0, Math.min(1, (px * bx + py * by) / lengthSquared)) : 0;
+        double dx = px - t * bx;
+        double dy = py - t * by;
+
+        return new Position(offsets[segment] + t * Math.sqrt(lengthSquared), Math.sqrt(dx * dx + dy * dy));
+    }
+
+    private double heading(int segment) {
+        double cosLat = Math.cos(Math.toRadians((latitudes[segment] + latitudes[segment + 1]) / 2));
+        return Math.atan2(latitudes[segment + 1] - latitudes[segment], (longitudes[segment + 1] - longitudes[segment]) * cosLat);
+    }
+
+    private double segmentLength(int segment) {
+        double cosLat = Math.cos(Math.toRadians((latitudes[segment] + latitudes[segment + 1]) / 2));
+        double dx = (longitudes[segment + 1] - longitudes[segment]) * cosLat * KM_PER_DEGREE;
+        double dy = (latitudes[segment + 1] - latitudes[segment]) * KM_PER_DEGREE;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    private long cellKey(double latitude, double longitude) {
+        return key((int) Math.floor(latitude / cellLat), (int) Math.floor(longitude / cellLng));
+    }
+
+    private static long key(int row, int column) {
+        return ((long) row << 32) | (column & 0xffffffffL);
+    }
+
+    /**
+     * Decodes a route in the Google encoded polyline format into {latitudes, longitudes}.
+     */
+    static double[][] decodePolyline(String encoded) {
+        List<double[]> points = new ArrayList<>();
+        int index = 0;
+        int latitude = 0;
+        int longitude = 0;
+
+        try {
+            while (index < encoded.length()) {
+                int[] result = new int[1];
+                index = decodeValue(encoded, index, result);
+                latitude += result[0];
+                index = decodeValue(encoded, index, result);
+                longitude += result[0];
+
+                points.add(new double[]{latitude / 1e5, longitude / 1e5});
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid encoded polyline.");
+        }
+
+        double[][] decoded = new double[2][points.size()];
+        for (int i = 0; i < points.size(); i++) {
+            decoded[0][i] = points.get(i)[0];
+            decoded[1][i] = points.get(i)[1];
+        }
+        return decoded;
+    }
+
+    private static int decodeValue(String encoded, int index, int[] result) {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = encoded.charAt(index++) - 63;
+            if (b < 0 || shift > 30) {
+                throw new IllegalArgumentException("Invalid encoded polyline.");
+            }
+            value |= (b & 0x1f) << shift;
+            shift += 5;
+        } while (b >= 0x20);
+
+        result[0] = (value & 1) != 0 ? ~(value >> 1) : (value >> 1);
+        return index;
+    }
+
+    public static class Position {
+        private final double offsetKm;
+        private final double distanceKm;
+
+        Position(double offsetKm, double distanceKm) {
+            this.offsetKm = offsetKm;
+            this.distanceKm = distanceKm;
+        }
+
+        /**
+         * Distance along the route from its start.
+         */
+        public double getOffsetKm() {
+            return offsetKm;
+        }
+
+        /**
+         * Distance from the route.
+         */
+        public double getDistanceKm() {
+            return distanceKm;
+        }
+    }
+}
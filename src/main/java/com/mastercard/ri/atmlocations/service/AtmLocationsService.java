@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.service;
+
+import com.mastercard.api.core.exception.ApiException;
+import com.mastercard.api.core.model.RequestMap;
+import com.mastercard.api.locations.ATMLocations;
+import com.mastercard.ri.atmlocations.dataset.DatasetReader;
+import com.mastercard.ri.atmlocations.dataset.VersionedDataset;
+import com.mastercard.ri.atmlocations.generated.model.*;
+import com.mastercard.ri.atmlocations.hedging.UpstreamHedger;
+import com.mastercard.ri.atmlocations.projection.Projection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+
+@Service
+public class AtmLocationsService {
+    private static final Logger logger = LoggerFactory.getLogger(AtmLocationsService.class);
+
+    private static final String QUERY_ROUTE = "ATMLocations.query";
+
+    @Autowired
+    private UpstreamHedger upstreamHedger;
+
+    @Autowired
+    private VersionedDataset<RequestMap, ATMLocations> atmDataset;
+
+    public Atms getAtms(RequestMap map) throws ApiException {
+        try (DatasetReader<RequestMap, ATMLocations> dataset = openDataset(null)) {
+            return getAtms(dataset, map, null);
+        }
+    }
+
+    /**
+     * Opens a reader of the given version of the dataset, or of the current version if it is null
+     * or no longer available. All queries of a request, and all pages a client requests with the
+     * same version, see the same data. The caller has to close it.
+     */
+    public DatasetReader<RequestMap, ATMLocations> openDataset(Long version) {
+        return atmDataset.open(version);
+    }
+
+    /**
+     * @param projection the fields to map, or null to map all fields.
+     */
+    public Atms getAtms(DatasetReader<RequestMap, ATMLocations> dataset, final RequestMap map, Projection projection) throws ApiException {
+        String key = new TreeMap<>(map).toString();
+
+        ATMLocations response = dataset.get(key);
+        if (response != null) {
+            dataset.request(key, map);
+        } else {
+            try {
+                response = upstreamHedger.call(QUERY_ROUTE, new Callable<ATMLocations>() {
+                    @Override
+                    public ATMLocations call() throws Exception {
+                        return ATMLocations.query(map);
+                    }
+                });
+            } catch (ApiException | RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            // spares the next refresh loading it again
+            dataset.offer(key, map, response);
+        }
+
+        return processResponse(response, projection);
+    }
+
+    private Atms processResponse(ATMLocations response, Projection projection) {
+
+        Atms atms = new Atms();
+        atms.setPageOffset(Integer.valueOf(response.get("Atms.PageOffset").toString()));
+        atms.setTotalCount(Integer.valueOf(response.get("Atms.TotalCount").toString()));
+
+        boolean mapAtms = includes(projection, "atm");
+        boolean mapLocation = includes(projection, "atm.location");
+        boolean mapAddress = includes(projection, "atm.location.address");
+        boolean mapPoint = includes(projection, "atm.location.point");
+        boolean mapName = includes(projection, "atm.location.name");
+        boolean mapDistance = includes(projection, "atm.location.distance");
+        boolean mapDistanceUnit = includes(projection, "atm.location.distanceUnit");
+        boolean mapHandicapAccessible = includes(projection, "atm.handicapAccessible");
+        boolean mapCamera = includes(projection, "atm.camera");
+        boolean mapAvailability = includes(projection, "atm.availability");
+        boolean mapAccessFees = includes(projection, "atm.accessFees");
+        boolean mapSharedDeposit = includes(projection, "atm.sharedDeposit");
+        boolean mapSurchargeFreeAlliance = includes(projection, "atm.surchargeFreeAlliance");
+        boolean mapSupportEmv = includes(projection, "atm.supportEmv");
+        boolean mapInternationalMaestroAccepted = includes(projection, "atm.internationalMaestroAccepted");
+
+        List<Map<String, Object>> list = (List<Map<String, Object>>) response.get("Atms.Atm");
+        if (mapAtms && list != null && !list.isEmpty()) {
+            List<Atm> atmList = new ArrayList<>(list.size());
+
+            for (Map<String, Object> i : list) {
+                Location location = null;
+                if (mapLocation) {
+                    Map<String, Object> locationMap = (Map<String, Object>) i.get("Location");
+
+                    location = new Location();
+                    if (mapName) {
+                        location.setName((String) locationMap.get("Name"));
+                    }
+                    if (mapDistance && locationMap.get("Distance") != null) {
+                        Double distance = Double.parseDouble(locationMap.get("Distance").toString());
+                        location.setDistance(Math.round(distance * 100) / 100.0);
+                    }
+                    if (mapDistanceUnit) {
+                        location.setDistanceUnit(locationMap.get("DistanceUnit").toString().toLowerCase());
+                    }
+
+                    if (mapAddress) {
+                        location.setAddress(processAddress((Map<String, Object>) locationMap.get("Address")));
+                    }
+                    if (mapPoint) {
+                        Map<String, Object> pointMap = (Map<String, Object>) locationMap.get("Point");
+
+                        Point point = new Point();
+                        point.setLatitude(Double.parseDouble(pointMap.get("Latitude").toString()));
+                        point.setLongitude(Double.parseDouble(pointMap.get("Longitude").toString()));
+                        location.setPoint(point);
+                    }
+                }
+
+                Atm atm = new Atm();
+
+                if (mapHandicapAccessible) {
+                    atm.setHandicapAccessible("YES".equals(i.get("HandicapAccessible")));
+                }
+                if (mapCamera) {
+                    atm.setCamera("YES".equals(i.get("Camera")));
+                }
+                if (mapAvailability) {
+                    atm.setAvailability((String) i.get("Availability"));
+                }
+                if (mapAccessFees) {
+                    atm.setAccessFees((String) i.get("AccessFees"));
+                }
+                if (mapSharedDeposit) {
+                    atm.setSharedDeposit("YES".equals(i.get("SharedDeposit")));
+                }
+                if (mapSurchargeFreeAlliance) {
+                    atm.setSurchargeFreeAlliance("YES".equals(i.get("SurchargeFreeAlliance")));
+                }
+                if (mapSupportEmv) {
+                    atm.setSupportEmv(Long.valueOf(1).equals(i.get("SupportEMV")));
+                }
+                if (mapInternationalMaestroAccepted) {
+                    atm.setInternationalMaestroAccepted(Long.valueOf(1).equals(i.get("InternationalMaestroAccepted")));
+                }
+                atm.setLocation(location);
+
+                atmList.add(atm);
+            }
+            atms.setAtm(atmList);
+        }
+
+        return atms;
+    }
+
+    private Address processAddress(Map<String, Object> addressMap) {
+        Map<String, Object> subDivisionMap = (Map<String, Object>) addressMap.get("CountrySubdivision");
+        Map<String, Object> countryMap = (Map<String, Object>) addressMap.get("Country");
+
+        CountrySubdivision subdivision = new CountrySubdivision();
+        subdivision.setCode((String) subDivisionMap.get("Code"));
+        subdivision.setName((String) subDivisionMap.get("Name"));
+
+        Country country = new Country();
+        country.setCode((String) countryMap.get("Code"));
+        country.setName((String) countryMap.get("Name"));
+
+        Address address = new Address();
+        address.setLine1((String) addressMap.get("Line1"));
+        address.setLine2((String) addressMap.get("Line2"));
+        address.setCity((String) addressMap.get("City"));
+        address.setPostalCode((String) addressMap.get("PostalCode"));
+        address.setCountrySubdivision(subdivision);
+        address.setCountry(country);
+        return address;
+    }
+
+    private static boolean includes(Projection projection, String path) {
+        return projection == null || projection.includes(path);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.standalone;
+
+import com.mastercard.ri.atmlocations.config.AppConfig;
+import com.mastercard.ri.atmlocations.logging.AccessLogFilter;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.LowResourceMonitor;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.DefaultServlet;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.context.ContextLoaderListener;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import javax.servlet.DispatcherType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumSet;
+import java.util.Properties;
+
+/**
+ * Runs the application in an embedded Jetty server instead of a servlet container.
+ * <p>
+ * Settings are read from {@code standalone.properties} and can be overridden with system
+ * properties, e.g. {@code java -Dserver.port=9090 -jar ref-impl-atm-locations-standalone.jar}.
+ */
+public class StandaloneServer {
+    private static final Logger logger = LoggerFactory.getLogger(StandaloneServer.class);
+
+    private final Properties properties;
+
+    public StandaloneServer(Properties properties) {
+        this.properties = properties;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = StandaloneServer.class.getResourceAsStream("/standalone.properties")) {
+            if (in != null) {
+                properties.load(in);
+            }
+        }
+        properties.putAll(System.getProperties());
+
+        Server server = new StandaloneServer(properties).createServer();
+        server.start();
+        logger.info("Listening on port {}", ((ServerConnector) server.getConnectors()[0]).getLocalPort());
+        server.join();
+    }
+
+    public Server createServer() throws IOException {
+        QueuedThreadPool threadPool = new QueuedThreadPool(
+                getInt("server.threads.max"),
+                getInt("server.threads.min"),
+                getInt("server.threads.idle.timeout.millis"),
+                new BlockingArrayQueue<Runnable>(getInt("server.threads.queue.capacity")));
+        threadPool.setName("http");
+
+        Server server = new Server(threadPool);
+        server.setStopAtShutdown(true);
+        server.setStopTimeout(getInt("server.stop.timeout.millis"));
+
+        HttpConfiguration httpConfiguration = new HttpConfiguration();
+        httpConfiguration.setSendServerVersion(false);
+        httpConfiguration.setRequestHeaderSize(getInt("server.request.header.size"));
+
+        ServerConnector connector = new ServerConnector(server,
+                getInt("server.acceptors"),
+                getInt("server.selectors"),
+                new HttpConnectionFactory(httpConfiguration));
+        connector.setHost(getString("server.host"));
+        connector.setPort(getInt("server.port"));
+        connector.setAcceptQueueSize(getInt("server.accept.queue.size"));
+        connector.setIdleTimeout(getInt("server.idle.timeout.millis"));
+        server.addConnector(connector);
+
+        // past the connection limit, idle connections are closed sooner to shed load
+        LowResourceMonitor lowResourceMonitor = new LowResourceMonitor(server);
+        lowResourceMonitor.setMaxConnections(getInt("server.max.connections"));
+        lowResourceMonitor.setLowResourcesIdleTimeout(getInt("server.low.resources.idle.timeout.millis"));
+        lowResourceMonitor.setMonitorThreads(true);
+        server.addBean(lowResourceMonitor);
+
+        server.setHandler(createContext());
+        return server;
+    }
+
+    /**
+     * Mirrors WEB-INF/web.xml, with async support enabled.
+     */
+    private ServletContextHandler createContext() throws IOException {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
+        context.setContextPath(getString("server.context.path"));
+        context.setBaseResource(getResourceBase());
+        context.setWelcomeFiles(new String[]{"index.html"});
+
+        AnnotationConfigWebApplicationContext applicationContext = new AnnotationConfigWebApplicationContext();
+        applicationContext.register(AppConfig.class);
+        context.addEventListener(new ContextLoaderListener(applicationContext));
+
+        FilterHolder accessLogFilter = new FilterHolder(new AccessLogFilter());
+        accessLogFilter.setName("accessLogFilter");
+        accessLogFilter.setAsyncSupported(true);
+        // REQUEST only: an async request is dispatched again when it completes and would be logged twice
+        context.addFilter(accessLogFilter, "/*", EnumSet.of(DispatcherType.REQUEST));
+
+        ServletHolder appServlet = new ServletHolder("appServlet", new DispatcherServlet(applicationContext));
+        appServlet.setAsyncSupported(true);
+        appServlet.setInitOrder(1);
+        context.addServlet(appServlet, "/");
+        context.addServlet(appServlet, "/index.html");
+
+        // serves the welcome file for the context root by forwarding to appServlet
+        ServletHolder defaultServlet = new ServletHolder("default", DefaultServlet.class);
+        defaultServlet.setInitParameter("dirAllowed", "false");
+        defaultServlet.setInitParameter("welcomeServlets", "true");
+        context.addServlet(defaultServlet, "");
+
+        return context;
+    }
+
+    private Resource getResourceBase() throws IOException {
+        String base = getString("server.resource.base");
+        return base != null ? Resource.newResource(base) : Resource.newClassPathResource("/webapp");
+    }
+
+    private String getString(String key) {
+        String value = properties.getProperty(key);
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private int getInt(String key) {
+        String value = getString(key);
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid integer value for " + key + ": '" + (value != null ? value : "") + "'.", e);
+        }
+    }
+}
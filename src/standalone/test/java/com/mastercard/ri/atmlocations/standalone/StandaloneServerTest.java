@@ -0,0 +1,128 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.standalone;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class StandaloneServerTest {
+    private static final String INDEX = "<html>standalone</html>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Server server;
+
+    private String baseUrl;
+
+    @Before
+    public void setup() throws Exception {
+        File index = new File(folder.getRoot(), "WEB-INF/static/index.html");
+        assertTrue(index.getParentFile().mkdirs());
+        Files.write(index.toPath(), INDEX.getBytes(StandardCharsets.UTF_8));
+
+        Properties properties = loadProperties();
+        properties.setProperty("server.host", "127.0.0.1");
+        properties.setProperty("server.port", "0");
+        properties.setProperty("server.resource.base", folder.getRoot().toURI().toString());
+
+        server = new StandaloneServer(properties).createServer();
+        server.start();
+        baseUrl = "http://127.0.0.1:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void shouldServeIndexForContextRoot() throws Exception {
+        HttpURLConnection connection = get("/");
+
+        assertEquals(200, connection.getResponseCode());
+        assertEquals(INDEX, IOUtils.toString(connection.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void shouldRouteAtmsToApplication() throws Exception {
+        HttpURLConnection connection = get("/atms");
+
+        // the required parameters are missing, so the application answers with its JSON error
+        assertEquals(400, connection.getResponseCode());
+        assertTrue(connection.getContentType().startsWith("application/json"));
+        assertTrue(IOUtils.toString(connection.getErrorStream(), StandardCharsets.UTF_8).contains("\"error\""));
+    }
+
+    @Test
+    public void shouldNameInvalidProperty() throws Exception {
+        Properties properties = loadProperties();
+        properties.setProperty("server.threads.max", " ");
+
+        try {
+            new StandaloneServer(properties).createServer();
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("server.threads.max"));
+        }
+    }
+
+    private HttpURLConnection get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(10000);
+        return connection;
+    }
+
+    private static Properties loadProperties() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = StandaloneServerTest.class.getResourceAsStream("/standalone.properties")) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControllerTest {
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void shouldAdmitBurstAndThenReject() {
+        AdmissionController controller = new AdmissionController(1, 3, 0, 0);
+
+        assertEquals(0, controller.tryAcquire("client", 1));
+        assertEquals(0, controller.tryAcquire("client", 1));
+        assertEquals(0, controller.tryAcquire("client", 1));
+        assertTrue(controller.tryAcquire("client", 1) > 0);
+    }
+
+    @Test
+    public void shouldReturnTimeUntilNextToken() {
+        AdmissionController controller = new AdmissionController(1, 1, 0, 0);
+
+        assertEquals(0, controller.tryAcquire("client", 1));
+        assertEquals(SECOND - 100, controller.tryAcquire("client", 101));
+        assertEquals(0, controller.tryAcquire("client", SECOND + 1));
+    }
+
+    @Test
+    public void shouldLimitClientsIndependently() {
+        AdmissionController controller = new AdmissionController(1, 1, 0, 0);
+        assertNotEquals(AdmissionController.stripe("client1"), AdmissionController.stripe("client2"));
+
+        assertEquals(0, controller.tryAcquire("client1", 1));
+        assertTrue(controller.tryAcquire("client1", 1) > 0);
+        assertEquals(0, controller.tryAcquire("client2", 1));
+    }
+
+    @Test
+    public void shouldRejectWhenUpstreamBudgetIsExhausted() {
+        AdmissionController controller = new AdmissionController(0, 0, 1, 2);
+
+        assertEquals(0, controller.tryAcquire("client1", 1));
+        assertEquals(0, controller.tryAcquire("client2", 1));
+        assertTrue(controller.tryAcquire("client3", 1) > 0);
+    }
+
+    @Test
+    public void shouldShareUpstreamBudgetBetweenActiveClients() {
+        AdmissionController controller = new AdmissionController(0, 0, 2, 1);
+
+        // both clients become active, the next scan spreads 2 req/s over them
+        controller.tryAcquire("client1", 1);
+        controller.tryAcquire("client2", SECOND);
+        controller.tryAcquire("client1", 2 * SECOND);
+        assertEquals(2, controller.getActiveClients());
+
+        assertTrue(controller.tryAcquire("client1", 2 * SECOND + SECOND / 2) > 0);
+        assertEquals(0, controller.tryAcquire("client2", 2 * SECOND + SECOND / 2));
+    }
+
+    @Test
+    public void shouldNotCountRejectedClientsAsActive() {
+        AdmissionController controller = new AdmissionController(0, 0, 1, 1);
+
+        assertEquals(0, controller.tryAcquire("client1", 1));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(controller.tryAcquire("client" + (i + 2), 2) > 0);
+        }
+        controller.tryAcquire("client1", 2 * SECOND);
+        assertEquals(1, controller.getActiveClients());
+    }
+
+    @Test
+    public void shouldChargeUpstreamBudgetPerPermit() {
+        AdmissionController controller = new AdmissionController(0, 0, 1, 4);
+
+        assertEquals(0, controller.tryAcquireUpstream(3, 1));
+        assertTrue(controller.tryAcquireUpstream(2, 1) > 0);
+        assertEquals(0, controller.tryAcquire("client", 1));
+        assertTrue(controller.tryAcquire("client", 1) > 0);
+    }
+
+    @Test
+    public void shouldGrantMorePermitsThanBurstOnlyFromFullBudget() {
+        AdmissionController controller = new AdmissionController(0, 0, 1, 4);
+
+        assertEquals(0, controller.tryAcquire("client", 1));
+        assertTrue(controller.tryAcquireUpstream(10, 1) > 0);
+        assertEquals(0, controller.tryAcquireUpstream(10, SECOND + 1));
+
+        // the budget stays in debt until the extra permits are paid back
+        assertTrue(controller.tryAcquire("client", 8 * SECOND) > 0);
+        assertEquals(0, controller.tryAcquire("client", 8 * SECOND + 1));
+    }
+
+    @Test
+    public void shouldKeepReserveOfUpstreamBudgetForRequests() {
+        AdmissionController controller = new AdmissionController(0, 0, 1, 4);
+
+        assertEquals(0, controller.tryAcquireSpareUpstream(1, 2, 1));
+        assertEquals(0, controller.tryAcquireSpareUpstream(1, 2, 1));
+        assertTrue(controller.tryAcquireSpareUpstream(1, 2, 1) > 0);
+
+        // requests still get the reserve, and background calls wait until it has been refilled
+        assertEquals(0, controller.tryAcquire("client1", 1));
+        assertEquals(0, controller.tryAcquire("client2", 1));
+        assertTrue(controller.tryAcquireSpareUpstream(1, 2, 2 * SECOND) > 0);
+        assertEquals(0, controller.tryAcquireSpareUpstream(1, 2, 3 * SECOND + 1));
+    }
+
+    @Test
+    public void shouldChargeFanOutToClient() {
+        AdmissionController controller = new AdmissionController(1, 2, 0, 0);
+
+        assertEquals(0, controller.tryAcquireFanOut("client1", 5, 1));
+        assertTrue(controller.tryAcquireFanOut("client1", 1, 1) > 0);
+        assertEquals(0, controller.tryAcquire("client2", 1));
+
+        // the client waits until the fan-out is paid back
+        assertTrue(controller.tryAcquire("client1", 4 * SECOND) > 0);
+        assertEquals(0, controller.tryAcquire("client1", 4 * SECOND + 1));
+    }
+
+    @Test
+    public void shouldGiveBackReleasedFanOutPermits() {
+        AdmissionController controller = new AdmissionController(1, 2, 1, 10);
+
+        assertEquals(0, controller.tryAcquireFanOut("client", 5, 1));
+        assertTrue(controller.tryAcquire("client", 1) > 0);
+
+        controller.releaseFanOut("client", 4);
+        assertEquals(0, controller.tryAcquire("client", 1));
+    }
+
+    @Test
+    public void shouldGiveBackReleasedUpstreamPermits() {
+        AdmissionController controller = new AdmissionController(0, 0, 1, 2);
+
+        assertEquals(0, controller.tryAcquireUpstream(2, 1));
+        assertTrue(controller.tryAcquireUpstream(1, 1) > 0);
+
+        controller.releaseUpstream(1);
+        assertEquals(0, controller.tryAcquireUpstream(1, 1));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.admission;
+
+import com.mastercard.ri.atmlocations.cluster.ClusterPeers;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdmissionInterceptorTest {
+    private static final String PEER = "10.0.0.2";
+
+    private final ClusterPeers clusterPeers = new ClusterPeers(Collections.singletonList("http://" + PEER + ":8080"));
+    private final AdmissionInterceptor interceptor = new AdmissionInterceptor(new AdmissionController(0, 0, 0, 0), "X-Client-Id", Collections.singleton("10.0.0.1"), clusterPeers);
+
+    @Test
+    public void shouldIdentifyClientByRemoteAddress() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.168.0.1");
+
+        assertEquals("192.168.0.1", interceptor.getClientId(request));
+    }
+
+    @Test
+    public void shouldIgnoreClientIdHeaderFromUntrustedAddress() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.168.0.1");
+        request.addHeader("X-Client-Id", "spoofed");
+
+        assertEquals("192.168.0.1", interceptor.getClientId(request));
+    }
+
+    @Test
+    public void shouldHonourClientIdHeaderFromTrustedProxy() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+        request.addHeader("X-Client-Id", "client");
+
+        assertEquals("client", interceptor.getClientId(request));
+    }
+
+    @Test
+    public void shouldFallBackToProxyAddressWithoutClientIdHeader() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.1");
+
+        assertEquals("10.0.0.1", interceptor.getClientId(request));
+    }
+
+    @Test
+    public void shouldIdentifyClientOfRequestForwardedByPeer() {
+        MockHttpServletRequest request = forwardedRequest(PEER);
+
+        assertEquals("192.168.0.1", interceptor.getClientId(request));
+    }
+
+    @Test
+    public void shouldIgnoreForwardedForFromOthers() {
+        MockHttpServletRequest request = forwardedRequest("192.168.0.2");
+
+        assertEquals("192.168.0.2", interceptor.getClientId(request));
+    }
+
+    @Test
+    public void shouldMarkAdmittedRequests() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("192.168.0.1");
+
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+        assertNotNull(request.getAttribute(ClusterPeers.ADMITTED_ATTRIBUTE));
+    }
+
+    @Test
+    public void shouldNotChargeRequestsAdmittedByPeer() throws Exception {
+        AdmissionInterceptor limited = new AdmissionInterceptor(new AdmissionController(1, 1, 0, 0), "X-Client-Id", Collections.<String>emptySet(), clusterPeers);
+        MockHttpServletRequest request = forwardedRequest(PEER);
+        request.addHeader("X-Cluster-Admitted", "true");
+
+        assertTrue(limited.preHandle(request, new MockHttpServletResponse(), null));
+        assertTrue(limited.preHandle(request, new MockHttpServletResponse(), null));
+    }
+
+    @Test
+    public void shouldChargeAdmittedHeaderFromOthers() throws Exception {
+        AdmissionInterceptor limited = new AdmissionInterceptor(new AdmissionController(1, 1, 0, 0), "X-Client-Id", Collections.<String>emptySet(), clusterPeers);
+        MockHttpServletRequest request = forwardedRequest("192.168.0.2");
+        request.addHeader("X-Cluster-Admitted", "true");
+
+        assertTrue(limited.preHandle(request, new MockHttpServletResponse(), null));
+        try {
+            limited.preHandle(request, new MockHttpServletResponse(), null);
+            fail();
+        } catch (RateLimitExceededException expected) {
+            assertEquals(1, expected.getRetryAfterSeconds());
+        }
+    }
+
+    private static MockHttpServletRequest forwardedRequest(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr(remoteAddr);
+        request.addHeader("X-Cluster-Forwarded", "http://" + remoteAddr + ":8080");
+        request.addHeader("X-Forwarded-For", "10.1.1.1, 192.168.0.1");
+        return request;
+    }
+}
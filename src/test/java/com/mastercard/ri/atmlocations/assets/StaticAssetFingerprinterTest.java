@@ -0,0 +1,133 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.assets;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class StaticAssetFingerprinterTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File root;
+
+    @Before
+    public void setup() throws IOException {
+        root = folder.getRoot();
+        write("index.html", "<link href=\"css/main.css\"><script src=\"js/app.js\"></script>"
+                + "<script src=\"https://example.com/lib.js\"></script><img src=\"images/logo.png\" />");
+        write("css/main.css", "@font-face { src: url('../fonts/light.eot?#iefix'), url(../fonts/light.woff); }");
+        write("js/app.js", repeat("var a = 1;\n", 100));
+        write("fonts/light.eot", "eot");
+        write("fonts/light.woff", "woff");
+        write("images/logo.png", "png");
+    }
+
+    @Test
+    public void shouldCopyAssetsToHashedNames() throws IOException {
+        StaticAssetFingerprinter fingerprinter = new StaticAssetFingerprinter(root.toPath());
+        fingerprinter.process();
+
+        String hashed = fingerprinter.getFingerprinted().get("js/app.js");
+        assertTrue(StaticAssetHandler.FINGERPRINTED.matcher(hashed).matches());
+        assertEquals(read("js/app.js"), read(hashed));
+        assertTrue(new File(root, "js/app.js").exists());
+    }
+
+    @Test
+    public void shouldRewriteReferencesInIndexAndStylesheets() throws IOException {
+        StaticAssetFingerprinter fingerprinter = new StaticAssetFingerprinter(root.toPath());
+        fingerprinter.process();
+
+        String index = read("index.html");
+        assertThat(index, containsString("href=\"" + fingerprinter.getFingerprinted().get("css/main.css") + "\""));
+        assertThat(index, containsString("src=\"" + fingerprinter.getFingerprinted().get("js/app.js") + "\""));
+        assertThat(index, containsString("src=\"" + fingerprinter.getFingerprinted().get("images/logo.png") + "\""));
+        assertThat(index, containsString("src=\"https://example.com/lib.js\""));
+
+        String stylesheet = read(fingerprinter.getFingerprinted().get("css/main.css"));
+        String eot = fingerprinter.getFingerprinted().get("fonts/light.eot").substring("fonts/".length());
+        String woff = fingerprinter.getFingerprinted().get("fonts/light.woff").substring("fonts/".length());
+        assertThat(stylesheet, containsString("url('../fonts/" + eot + "?#iefix')"));
+        assertThat(stylesheet, containsString("url(../fonts/" + woff + ")"));
+    }
+
+    @Test
+    public void shouldPrecompressOnlyCompressibleAssets() throws IOException {
+        StaticAssetFingerprinter fingerprinter = new StaticAssetFingerprinter(root.toPath());
+        fingerprinter.process();
+
+        assertTrue(new File(root, "js/app.js.gz").exists());
+        assertTrue(new File(root, fingerprinter.getFingerprinted().get("js/app.js") + ".gz").exists());
+        assertFalse(new File(root, "images/logo.png.gz").exists());
+        // not worth compressing
+        assertFalse(new File(root, "fonts/light.eot.gz").exists());
+    }
+
+    @Test
+    public void shouldIgnoreOutputOfPreviousRun() throws IOException {
+        new StaticAssetFingerprinter(root.toPath()).process();
+        write("index.html", "<script src=\"js/app.js\"></script>");
+
+        StaticAssetFingerprinter fingerprinter = new StaticAssetFingerprinter(root.toPath());
+        fingerprinter.process();
+
+        assertEquals(5, fingerprinter.getFingerprinted().size());
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String read(String path) throws IOException {
+        return new String(Files.readAllBytes(new File(root, path).toPath()), StandardCharsets.UTF_8);
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.assets;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StaticAssetHandlerTest {
+    private static final String HASHED_JS = "js/app.0123456789.js";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StaticAssetHandler handler;
+
+    private byte[] gzipped;
+
+    @Before
+    public void setup() throws IOException {
+        File root = folder.getRoot();
+        write(root, "WEB-INF/static/index.html", "<html></html>".getBytes(StandardCharsets.UTF_8));
+        write(root, "WEB-INF/static/" + HASHED_JS, "var a = 1;".getBytes(StandardCharsets.UTF_8));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write("var a = 1;".getBytes(StandardCharsets.UTF_8));
+        }
+        gzipped = out.toByteArray();
+        write(root, "WEB-INF/static/" + HASHED_JS + ".gz", gzipped);
+
+        handler = new StaticAssetHandler("/WEB-INF/static/");
+        handler.setServletContext(new MockServletContext("file:" + root.getAbsolutePath(), new DefaultResourceLoader()));
+    }
+
+    @Test
+    public void shouldServeFingerprintedAssetsWithImmutableCaching() throws Exception {
+        MockHttpServletResponse response = get(HASHED_JS, null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("var a = 1;", response.getContentAsString());
+        assertEquals(StaticAssetHandler.IMMUTABLE_CACHE_CONTROL, response.getHeader("Cache-Control"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+    }
+
+    @Test
+    public void shouldServeOtherAssetsWithRevalidation() throws Exception {
+        MockHttpServletResponse response = get("index.html", null);
+
+        assertEquals(200, response.getStatus());
+        assertEquals("<html></html>", response.getContentAsString());
+        assertEquals(StaticAssetHandler.REVALIDATE_CACHE_CONTROL, response.getHeader("Cache-Control"));
+        assertNull(response.getHeader("Vary"));
+    }
+
+    @Test
+    public void shouldServePrecompressedVariantWhenAccepted() throws Exception {
+        MockHttpServletResponse response = get(HASHED_JS, "gzip, deflate");
+
+        assertEquals(200, response.getStatus());
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertArrayEquals(gzipped, response.getContentAsByteArray());
+    }
+
+    @Test
+    public void shouldServeIdentityVariantWhenGzipIsRefused() throws Exception {
+        MockHttpServletResponse response = get(HASHED_JS, "gzip;q=0, deflate");
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader("Content-Encoding"));
+        assertEquals("var a = 1;", response.getContentAsString());
+    }
+
+    @Test
+    public void shouldHonourGzipQualityValues() {
+        assertTrue(acceptsGzip("gzip;q=0.5"));
+        assertTrue(acceptsGzip("deflate, GZIP ; q=1.0"));
+        assertTrue(acceptsGzip("*"));
+        assertFalse(acceptsGzip("gzip; q=0.0"));
+        assertFalse(acceptsGzip("gzip;q=0, *"));
+        assertFalse(acceptsGzip("*;q=0"));
+        assertFalse(acceptsGzip("deflate"));
+        assertFalse(acceptsGzip(null));
+    }
+
+    @Test
+    public void shouldReturnNotModifiedWhenEtagMatches() throws Exception {
+        String etag = (String) get("index.html", null).getHeaderValue("ETag");
+
+        MockHttpServletRequest request = request("index.html");
+        request.addHeader("If-None-Match", etag);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleRequest(request, response);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    public void shouldReturnNotFoundForMissingOrProtectedAssets() throws Exception {
+        assertEquals(404, get("missing.js", null).getStatus());
+        assertEquals(404, get("../static/index.html", null).getStatus());
+        assertEquals(404, get(HASHED_JS + ".gz", null).getStatus());
+    }
+
+    private MockHttpServletResponse get(String path, String acceptEncoding) throws Exception {
+        MockHttpServletRequest request = request(path);
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        handler.handleRequest(request, response);
+        return response;
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (acceptEncoding != null) {
+            request.addHeader("Accept-Encoding", acceptEncoding);
+        }
+        return StaticAssetHandler.acceptsGzip(request);
+    }
+
+    private static MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/" + path);
+        request.setAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE, path);
+        return request;
+    }
+
+    private static void write(File root, String path, byte[] content) throws IOException {
+        File file = new File(root, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content);
+    }
+}
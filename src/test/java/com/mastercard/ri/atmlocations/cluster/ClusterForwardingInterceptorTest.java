@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.cluster;
+
+import com.mastercard.ri.atmlocations.logging.ErrorLogSampler;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.mockserver.client.server.MockServerClient;
+import org.mockserver.junit.MockServerRule;
+import org.mockserver.matchers.Times;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.once;
+
+public class ClusterForwardingInterceptorTest {
+    private static final String SELF = "http://localhost:1";
+    private static final int PRECISION = 4;
+    private static final long DOWN_MILLIS = 200;
+
+    @Rule
+    public MockServerRule mockServerRule = new MockServerRule(this);
+
+    MockServerClient mockServerClient;
+
+    private CloseableHttpClient httpClient;
+    private ConsistentHashRing ring;
+    private ClusterForwardingInterceptor interceptor;
+    private String peer;
+
+    @Before
+    public void setup() {
+        peer = "http://127.0.0.1:" + mockServerRule.getPort() + "/app";
+        ring = new ConsistentHashRing(Arrays.asList(SELF, peer), 128);
+        httpClient = HttpClients.custom()
+                .setDefaultRequestConfig(RequestConfig.custom().setConnectTimeout(500).setSocketTimeout(2000).build())
+                .build();
+        interceptor = new ClusterForwardingInterceptor(ring, SELF, PRECISION, httpClient, DOWN_MILLIS, new ErrorLogSampler(60000));
+    }
+
+    @After
+    public void cleanup() throws Exception {
+        httpClient.close();
+        mockServerClient.reset();
+    }
+
+    @Test
+    public void shouldHandleOwnedPartitionLocally() throws Exception {
+        assertTrue(interceptor.preHandle(atmsRequest(findLatitude(SELF)), new MockHttpServletResponse(), null));
+        assertEquals(0, interceptor.getForwarded());
+    }
+
+    @Test
+    public void shouldForwardOtherPartitionToOwner() throws Exception {
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"))
+                .respond(response()
+                        .withStatusCode(200)
+                        .withHeader("Content-Type", "application/json;charset=UTF-8")
+                        .withBody("{\"totalCount\":1}"));
+
+        MockHttpServletRequest request = atmsRequest(findLatitude(peer));
+        request.addHeader("X-Client-Id", "client");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(request, response, null));
+        assertEquals(200, response.getStatus());
+        assertEquals("application/json;charset=UTF-8", response.getHeader("Content-Type"));
+        assertEquals("{\"totalCount\":1}", response.getContentAsString());
+        assertEquals(1, interceptor.getForwarded());
+
+        mockServerClient.verify(request()
+                .withPath("/app/atms")
+                .withQueryStringParameter("latitude", request.getParameter("latitude"))
+                .withHeader(ClusterForwardingInterceptor.FORWARDED_HEADER, SELF)
+                .withHeader("X-Client-Id", "client"));
+    }
+
+    @Test
+    public void shouldPassOnClientErrorsOfOwner() throws Exception {
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"))
+                .respond(response()
+                        .withStatusCode(400)
+                        .withHeader("Content-Type", "application/json;charset=UTF-8")
+                        .withBody("{\"error\":[{\"source\":\"Input\"}]}"));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(atmsRequest(findLatitude(peer)), response, null));
+        assertEquals(400, response.getStatus());
+        assertEquals("{\"error\":[{\"source\":\"Input\"}]}", response.getContentAsString());
+    }
+
+    @Test
+    public void shouldTellOwnerWhetherRequestWasAdmitted() throws Exception {
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"))
+                .respond(response().withStatusCode(200));
+
+        MockHttpServletRequest admitted = atmsRequest(findLatitude(peer));
+        admitted.setAttribute(ClusterPeers.ADMITTED_ATTRIBUTE, Boolean.TRUE);
+        assertFalse(interceptor.preHandle(admitted, new MockHttpServletResponse(), null));
+
+        // a client cannot claim admission on its own
+        MockHttpServletRequest spoofed = atmsRequest(findLatitude(peer));
+        spoofed.addHeader(ClusterPeers.ADMITTED_HEADER, "true");
+        assertFalse(interceptor.preHandle(spoofed, new MockHttpServletResponse(), null));
+
+        mockServerClient.verify(request().withPath("/app/atms").withHeader(ClusterPeers.ADMITTED_HEADER, "true"), once());
+    }
+
+    @Test
+    public void shouldFallBackToLocalWhenOwnerFails() throws Exception {
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"))
+                .respond(response().withStatusCode(503));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(atmsRequest(findLatitude(peer)), response, null));
+        assertFalse(response.isCommitted());
+        assertEquals(1, interceptor.getFallbacks());
+    }
+
+    @Test
+    public void shouldFallBackToLocalWhenOwnerIsUnreachable() throws Exception {
+        String unreachable = "http://127.0.0.1:1";
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList(SELF, unreachable), 128);
+        interceptor = new ClusterForwardingInterceptor(ring, SELF, PRECISION, httpClient, DOWN_MILLIS, new ErrorLogSampler(60000));
+        this.ring = ring;
+
+        assertTrue(interceptor.preHandle(atmsRequest(findLatitude(unreachable)), new MockHttpServletResponse(), null));
+        assertEquals(1, interceptor.getFallbacks());
+    }
+
+    @Test
+    public void shouldSkipOwnerMarkedDownAfterFailure() throws Exception {
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"))
+                .respond(response().withStatusCode(503));
+
+        assertTrue(interceptor.preHandle(atmsRequest(findLatitude(peer)), new MockHttpServletResponse(), null));
+        assertTrue(interceptor.preHandle(atmsRequest(findLatitude(peer)), new MockHttpServletResponse(), null));
+
+        assertEquals(2, interceptor.getFallbacks());
+        assertEquals(1, interceptor.getDownOwners());
+        mockServerClient.verify(request().withPath("/app/atms"), once());
+    }
+
+    @Test
+    public void shouldProbeOwnerAgainOnceDownPeriodHasPassed() throws Exception {
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"), Times.once())
+                .respond(response().withStatusCode(503));
+
+        assertTrue(interceptor.preHandle(atmsRequest(findLatitude(peer)), new MockHttpServletResponse(), null));
+        Thread.sleep(2 * DOWN_MILLIS);
+
+        mockServerClient
+                .when(request().withMethod("GET").withPath("/app/atms"))
+                .respond(response().withStatusCode(200).withBody("{}"));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        assertFalse(interceptor.preHandle(atmsRequest(findLatitude(peer)), response, null));
+        assertEquals(200, response.getStatus());
+        assertEquals(1, interceptor.getForwarded());
+        assertEquals(0, interceptor.getDownOwners());
+    }
+
+    @Test
+    public void shouldHandleForwardedRequestLocally() throws Exception {
+        MockHttpServletRequest request = atmsRequest(findLatitude(peer));
+        request.addHeader(ClusterForwardingInterceptor.FORWARDED_HEADER, peer);
+
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+        assertEquals(0, interceptor.getForwarded());
+    }
+
+    @Test
+    public void shouldHandleRequestWithoutCoordinatesLocally() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/atms");
+        request.addParameter("latitude", "abc");
+
+        assertTrue(interceptor.preHandle(request, new MockHttpServletResponse(), null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireSelfToBeAPeer() {
+        new ClusterForwardingInterceptor(ring, "http://localhost:2", PRECISION, httpClient, DOWN_MILLIS, new ErrorLogSampler(60000));
+    }
+
+    private double findLatitude(String owner) {
+        for (double latitude = -80; latitude < 80; latitude += 0.5) {
+            if (ring.getOwner(Geohash.encode(latitude, -74.0, PRECISION)).equals(owner)) {
+                return latitude;
+            }
+        }
+        throw new IllegalStateException("No partition owned by " + owner);
+    }
+
+    private static MockHttpServletRequest atmsRequest(double latitude) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/atms");
+        request.addParameter("latitude", String.valueOf(latitude));
+        request.addParameter("longitude", "-74.0");
+        request.setQueryString("latitude=" + latitude + "&longitude=-74.0");
+        return request;
+    }
+}
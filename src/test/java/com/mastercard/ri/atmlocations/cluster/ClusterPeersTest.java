@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.cluster;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterPeersTest {
+    private final ClusterPeers peers = new ClusterPeers(Arrays.asList("http://localhost:8080", "http://10.0.0.2:8080/app", "not a url"));
+
+    @Test
+    public void shouldResolvePeerAddresses() {
+        assertTrue(peers.getAddresses().contains("127.0.0.1"));
+        assertTrue(peers.getAddresses().contains("10.0.0.2"));
+    }
+
+    @Test
+    public void shouldRecogniseRequestsForwardedByPeer() {
+        MockHttpServletRequest request = request("10.0.0.2");
+        assertFalse(peers.isForwardedByPeer(request));
+
+        request.addHeader(ClusterForwardingInterceptor.FORWARDED_HEADER, "http://10.0.0.2:8080/app");
+        assertTrue(peers.isForwardedByPeer(request));
+        assertFalse(peers.isAdmittedByPeer(request));
+
+        request.addHeader(ClusterPeers.ADMITTED_HEADER, "true");
+        assertTrue(peers.isAdmittedByPeer(request));
+    }
+
+    @Test
+    public void shouldNotTrustClusterHeadersFromOthers() {
+        MockHttpServletRequest request = request("192.168.0.1");
+        request.addHeader(ClusterForwardingInterceptor.FORWARDED_HEADER, "http://10.0.0.2:8080/app");
+        request.addHeader(ClusterPeers.ADMITTED_HEADER, "true");
+
+        assertFalse(peers.isForwardedByPeer(request));
+        assertFalse(peers.isAdmittedByPeer(request));
+    }
+
+    @Test
+    public void shouldTakeClientAddressAppendedByPeer() {
+        MockHttpServletRequest request = request("10.0.0.2");
+        request.addHeader("X-Forwarded-For", "1.1.1.1");
+        request.addHeader("X-Forwarded-For", "2.2.2.2, 192.168.0.1");
+
+        assertEquals("192.168.0.1", peers.getForwardedClientAddress(request));
+        assertEquals("10.0.0.2", peers.getForwardedClientAddress(request("10.0.0.2")));
+    }
+
+    @Test
+    public void shouldHaveNoAddressesWhenClusterIsDisabled() {
+        assertTrue(new ClusterPeers(Collections.<String>emptyList()).getAddresses().isEmpty());
+    }
+
+    private static MockHttpServletRequest request(String remoteAddr) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/atms");
+        request.setRemoteAddr(remoteAddr);
+        return request;
+    }
+}
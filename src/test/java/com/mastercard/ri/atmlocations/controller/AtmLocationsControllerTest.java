@@ -143,6 +143,63 @@ public class AtmLocationsControllerTest implements Constants {
                 .andExpect(jsonPath("$.atm[0].internationalMaestroAccepted", is(true)));
     }
 
+    @Test
+    public void shouldReturnOnlyRequestedFields() throws Exception {
+        String testJson = IOUtils.toString(getClass().getResourceAsStream("/atm-locations-test.json"));
+
+        mockServerClient
+                .when(
+                        request()
+                                .withMethod("GET")
+                )
+                .respond(
+                        response()
+                                .withStatusCode(HttpStatus.OK.value())
+                                .withHeader(CONTENT_TYPE, APPLICATION_JSON_UTF8_VALUE)
+                                .withBody(testJson)
+                );
+
+        this.mvc.perform(
+                get("/atms")
+                        .param("pageLength", "20")
+                        .param("pageOffset", "0")
+                        .param("latitude", "40.742859")
+                        .param("longitude", "-74.000284")
+                        .param("distanceUnit", "KILOMETER")
+                        .param("postalCode", "10011")
+                        .param("country", "USA")
+                        .param("fields", "totalCount,atm.location.name,atm.location.point")
+                        .accept(APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON_UTF8_VALUE))
+                .andExpect(jsonPath("$.pageOffset").doesNotExist())
+                .andExpect(jsonPath("$.totalCount", is(2)))
+                .andExpect(jsonPath("$.atm[0].location.name", is("Sandbox ATM Location 1")))
+                .andExpect(jsonPath("$.atm[0].location.point.longitude", is(144.97742109605883)))
+                .andExpect(jsonPath("$.atm[0].location.distance").doesNotExist())
+                .andExpect(jsonPath("$.atm[0].location.address").doesNotExist())
+                .andExpect(jsonPath("$.atm[0].camera").doesNotExist());
+    }
+
+    @Test
+    public void shouldReturnAnErrorWhenFieldIsUnknown() throws Exception {
+        this.mvc.perform(
+                get("/atms")
+                        .param("pageLength", "20")
+                        .param("pageOffset", "0")
+                        .param("latitude", "40.742859")
+                        .param("longitude", "-74.000284")
+                        .param("distanceUnit", "KILOMETER")
+                        .param("postalCode", "10011")
+                        .param("country", "USA")
+                        .param("fields", "totalCount,atm.location.color")
+                        .accept(APPLICATION_JSON_UTF8))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.error[0].source", is("Input")))
+                .andExpect(jsonPath("$.error[0].reason", is("Unknown field 'atm.location.color'.")));
+    }
+
     @Test
     public void shouldReturnNoResultsWhenThereAreNoResults() throws Exception {
         String testJson = IOUtils.toString(getClass().getResourceAsStream("/atm-locations-test-empty.json"));
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+
+package com.mastercard.ri.atmlocations.controller;
+
+import com.mastercard.ri.atmlocations.admission.AdmissionController;
+import com.mastercard.ri.atmlocations.admission.AdmissionInterceptor;
+import com.mastercard.ri.atmlocations.cluster.ClusterPeers;
+import com.mastercard.ri.atmlocations.logging.ErrorLogSampler;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.stereotype.Controller;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
+import org.springframework.web.servlet.mvc.method.annotation.ExceptionHandlerExceptionResolver;
+import org.springframework.web.servlet.mvc.method.annotation.ServletInvocableHandlerMethod;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+public class ExceptionControllerAdviceTest {
+    private MockMvc mvc;
+
+    @Before
+    public void setup() {
+        final ExceptionControllerAdvice advice = new ExceptionControllerAdvice();
+        advice.errorLogSampler = new ErrorLogSampler(1000);
+
+        // standalone setups do not pick up @ControllerAdvice beans, so the resolver is pointed at it directly
+        ExceptionHandlerExceptionResolver resolver = new ExceptionHandlerExceptionResolver() {
+            @Override
+            protected ServletInvocableHandlerMethod getExceptionHandlerMethod(HandlerMethod handlerMethod, Exception exception) {
+                Method method = new ExceptionHandlerMethodResolver(ExceptionControllerAdvice.class).resolveMethod(exception);
+                return method != null ? new ServletInvocableHandlerMethod(advice, method) : null;
+            }
+        };
+        resolver.setMessageConverters(Collections.<HttpMessageConverter<?>>singletonList(new MappingJackson2HttpMessageConverter()));
+        resolver.afterPropertiesSet();
+
+        // one request every 10 seconds per client
+        AdmissionInterceptor interceptor = new AdmissionInterceptor(new AdmissionController(0.1, 1, 0, 0), "",
+                Collections.<String>emptySet(), new ClusterPeers(Collections.<String>emptyList()));
+
+        mvc = MockMvcBuilders.standaloneSetup(new PingController())
+                .addInterceptors(interceptor)
+                .setHandlerExceptionResolvers(resolver)
+                .build();
+    }
+
+    @Test
+    public void shouldRespondTooManyRequestsWhenRateLimitIsExceeded() throws Exception {
+        mvc.perform(get("/ping"))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/ping"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "10"))
+                .andExpect(jsonPath("$.error[0].source", is("System")))
+                .andExpect(jsonPath("$.error[0].reason", is("Too many requests. Retry after 10 second(s).")));
+    }
+
+    @Test
+    public void shouldLimitEachClientSeparately() throws Exception {
+        mvc.perform(get("/ping").with(remoteAddr("192.168.0.1")))
+                .andExpect(status().isOk());
+
+        mvc.perform(get("/ping").with(remoteAddr("192.168.0.2")))
+                .andExpect(status().isOk());
+    }
+
+    private static RequestPostProcessor remoteAddr(final String address) {
+        return new RequestPostProcessor() {
+            @Override
+            public MockHttpServletRequest postProcessRequest(MockHttpServletRequest request) {
+                request.setRemoteAddr(address);
+                return request;
+            }
+        };
+    }
+
+    @Controller
+    static class PingController {
+        @RequestMapping("/ping")
+        @ResponseBody
+        public String ping() {
+            return "pong";
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.controller;
+
+import com.mastercard.api.core.ApiConfig;
+import com.mastercard.api.core.model.Environment;
+import com.mastercard.api.core.security.Authentication;
+import com.mastercard.ri.atmlocations.Constants;
+import com.mastercard.ri.atmlocations.config.AppConfig;
+import com.mastercard.ri.atmlocations.route.RouteCorridor;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockserver.client.server.MockServerClient;
+import org.mockserver.junit.MockServerRule;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.result.MockMvcResultHandlers;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.mockito.Mockito.mock;
+import static org.mockserver.model.HttpRequest.request;
+import static org.mockserver.model.HttpResponse.response;
+import static org.mockserver.verify.VerificationTimes.exactly;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = AppConfig.class)
+@WebAppConfiguration
+public class RouteCorridorControllerTest implements Constants {
+    private static final String CONTENT_TYPE = "Content-Type";
+
+    // (-37.79808, 144.9903) -> (-37.80693, 144.97742)
+    private static final String POLYLINE = "~lueFkl}sZhv@noA";
+
+    @Rule
+    public MockServerRule mockServerRule = new MockServerRule(this);
+
+    MockServerClient mockServerClient;
+
+    @Autowired
+    WebApplicationContext context;
+
+    MockMvc mvc;
+
+    @Before
+    public void setup() throws Exception {
+        mvc = MockMvcBuilders.webAppContextSetup(context).build();
+        Environment.MAPPINGS.put(Environment.LOCALHOST, new String[]{"http://127.0.0.1:" + mockServerRule.getPort(), null});
+        ApiConfig.setEnvironment(Environment.LOCALHOST);
+        ApiConfig.setAuthentication(mock(Authentication.class));
+    }
+
+    @After
+    public void cleanup() {
+        mockServerClient.reset();
+    }
+
+    @Test
+    public void shouldReturnAtmsOrderedAlongRoute() throws Exception {
+        String testJson = IOUtils.toString(getClass().getResourceAsStream("/atm-locations-test.json"));
+
+        mockServerClient
+                .when(
+                        request()
+                                .withMethod("GET")
+                )
+                .respond(
+                        response()
+                                .withStatusCode(HttpStatus.OK.value())
+                                .withHeader(CONTENT_TYPE, APPLICATION_JSON_UTF8_VALUE)
+                                .withBody(testJson)
+                );
+
+        this.mvc.perform(
+                get("/atms/corridor")
+                        .param("polyline", POLYLINE)
+                        .param("width", "1")
+                        .param("distanceUnit", "KILOMETER")
+                        .accept(APPLICATION_JSON_UTF8))
+                .andDo(MockMvcResultHandlers.print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_JSON_UTF8_VALUE))
+                .andExpect(jsonPath("$.pageOffset", is(0)))
+                .andExpect(jsonPath("$.totalCount", is(2)))
+                .andExpect(jsonPath("$.atm[0].location.name", is("Sandbox ATM Location 2")))
+                .andExpect(jsonPath("$.atm[0].location.distance", is(0.0)))
+                .andExpect(jsonPath("$.atm[1].location.name", is("Sandbox ATM Location 1")))
+                .andExpect(jsonPath("$.atm[1].location.distance", is(0.0)));
+    }
+
+    @Test
+    public void shouldPageEachPointUpToPageLimit() throws Exception {
+        // every page returns the same two ATMs of a hundred, so each point stops at the page limit
+        String testJson = IOUtils.toString(getClass().getResourceAsStream("/atm-locations-test.json"))
+                .replace("\"TotalCount\":2", "\"TotalCount\":100");
+        int centers = RouteCorridor.fromEncodedPolyline(POLYLINE, 1).getQueryCenters().size();
+
+        mockServerClient
+                .when(
+                        request()
+                                .withMethod("GET")
+                )
+                .respond(
+                        response()
+                                .withStatusCode(HttpStatus.OK.value())
+                                .withHeader(CONTENT_TYPE, APPLICATION_JSON_UTF8_VALUE)
+                                .withBody(testJson)
+                );
+
+        this.mvc.perform(
+                get("/atms/corridor")
+                        .param("polyline", POLYLINE)
+                        .param("width", "1")
+                        .param("distanceUnit", "KILOMETER")
+                        .accept(APPLICATION_JSON_UTF8))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalCount", is(2)));
+
+        mockServerClient.verify(request().withMethod("GET"), exactly(centers * RouteCorridorController.MAX_PAGES_PER_POINT));
+    }
+
+    @Test
+    public void shouldReturnAnErrorWhenPolylineIsInvalid() throws Exception {
+        this.mvc.perform(
+                get("/atms/corridor")
+                        .param("polyline", "~lueFkl}s")
+                        .param("width", "1")
+                        .param("distanceUnit", "KILOMETER")
+                        .accept(APPLICATION_JSON_UTF8))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().contentType(APPLICATION_JSON_UTF8))
+                .andExpect(jsonPath("$.error[0].source", is("System")))
+                .andExpect(jsonPath("$.error[0].reason", is("Invalid encoded polyline.")));
+    }
+}
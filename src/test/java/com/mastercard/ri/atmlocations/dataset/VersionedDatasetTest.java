@@ -0,0 +1,338 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.dataset;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class VersionedDatasetTest {
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Set<String> failing = new HashSet<>();
+    private final Set<String> deferring = new HashSet<>();
+    private VersionedDataset.Loader<String, String> loader;
+    private VersionedDataset<String, String> dataset;
+
+    @Before
+    public void setup() {
+        loader = new VersionedDataset.Loader<String, String>() {
+            @Override
+            public String load(String query) throws Exception {
+                if (failing.contains(query)) {
+                    throw new Exception("failed " + query);
+                }
+                if (deferring.contains(query)) {
+                    return null;
+                }
+                return query + "#" + loads.incrementAndGet();
+            }
+        };
+        dataset = new VersionedDataset<>(loader, 10, 3, 0);
+    }
+
+    @Test
+    public void shouldPublishRequestedQueriesOnRefresh() {
+        DatasetVersion<String> version = dataset.pin();
+        assertEquals(0, version.getNumber());
+        assertNull(version.get("a"));
+        version.unpin();
+
+        dataset.request("a", "a");
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        version = dataset.pin();
+        assertEquals(1, version.getNumber());
+        assertEquals("a#1", version.get("a"));
+        assertEquals(1, version.size());
+        assertTrue(version.getEstimatedBytes() > 0);
+        version.unpin();
+
+        assertEquals(1, dataset.getVersion());
+        assertEquals(1, dataset.getVersionEntries());
+        assertTrue(dataset.getLastRefreshMillis() >= 0);
+    }
+
+    @Test
+    public void shouldDropQueriesNotRequested() {
+        dataset.request("a", "a");
+        dataset.refresh();
+        dataset.request("b", "b");
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin();
+        assertNull(version.get("a"));
+        assertEquals("b#2", version.get("b"));
+        version.unpin();
+    }
+
+    @Test
+    public void shouldKeepPinnedVersionUnchangedByRefresh() {
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        DatasetVersion<String> pinned = dataset.pin();
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        assertEquals("a#1", pinned.get("a"));
+        assertEquals(1, dataset.getRetiredVersions());
+        assertEquals(pinned.getEstimatedBytes(), dataset.getRetiredVersionBytes());
+
+        DatasetVersion<String> latest = dataset.pin();
+        assertEquals("a#2", latest.get("a"));
+        latest.unpin();
+
+        pinned.unpin();
+        assertEquals(1, dataset.getRetiredVersions());
+
+        dataset.refresh();
+        assertEquals(1, dataset.getRetiredVersions());
+        assertFalse(pinned.pin());
+    }
+
+    @Test
+    public void shouldNotPinReleasedVersion() {
+        DatasetVersion<String> initial = dataset.pin();
+        initial.unpin();
+        dataset.refresh();
+        dataset.refresh();
+
+        assertFalse(initial.pin());
+        assertEquals(2, dataset.pin().getNumber());
+        assertEquals(2, dataset.pin(0).getNumber());
+    }
+
+    @Test
+    public void shouldPinVersionReplacedByLastRefresh() {
+        dataset.request("a", "a");
+        dataset.refresh();
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin(1);
+        assertEquals(1, version.getNumber());
+        assertEquals("a#1", version.get("a"));
+        version.unpin();
+
+        version = dataset.pin(2);
+        assertEquals("a#2", version.get("a"));
+        version.unpin();
+    }
+
+    @Test
+    public void shouldPinOlderVersionWhileReadersHoldIt() {
+        dataset.refresh();
+        DatasetVersion<String> held = dataset.pin();
+        dataset.refresh();
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin(1);
+        assertSame(held, version);
+        version.unpin();
+        held.unpin();
+
+        assertEquals(3, dataset.pin(1).getNumber());
+    }
+
+    @Test
+    public void shouldOpenReaderOfRequestedVersion() {
+        dataset.request("a", "a");
+        dataset.refresh();
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        DatasetReader<String, String> reader = dataset.open(1L);
+        assertEquals(1, reader.getVersionNumber());
+        assertEquals("a#1", reader.get("a"));
+        reader.close();
+
+        reader = dataset.open(null);
+        assertEquals(2, reader.getVersionNumber());
+        reader.close();
+    }
+
+    @Test
+    public void shouldBoundQueriesRecordedByOneReader() {
+        DatasetReader<String, String> reader = dataset.open(null);
+        for (int i = 0; i < 5; i++) {
+            reader.request("q" + i, "q" + i);
+        }
+        reader.close();
+        dataset.refresh();
+
+        assertEquals(3, dataset.getVersionEntries());
+    }
+
+    @Test
+    public void shouldKeepPreviousResultWhenLoadFails() {
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        failing.add("a");
+        dataset.request("a", "a");
+        dataset.request("b", "b");
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin();
+        assertEquals("a#1", version.get("a"));
+        assertEquals("b#2", version.get("b"));
+        version.unpin();
+        assertEquals(1, dataset.getRefreshFailures());
+    }
+
+    @Test
+    public void shouldTakeOverOfferedResultWithoutLoading() {
+        DatasetReader<String, String> reader = dataset.open(null);
+        reader.offer("a", "a", "a#live");
+        reader.request("b", "b");
+        reader.close();
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin();
+        assertEquals("a#live", version.get("a"));
+        assertEquals("b#1", version.get("b"));
+        version.unpin();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldLoadOnlyResultsOlderThanMaxAge() {
+        dataset = new VersionedDataset<>(loader, 10, 3, TimeUnit.HOURS.toMillis(1));
+        dataset.request("a", "a");
+        dataset.refresh();
+        dataset.request("a", "a");
+        dataset.request("b", "b");
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin();
+        assertEquals("a#1", version.get("a"));
+        assertEquals("b#2", version.get("b"));
+        version.unpin();
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void shouldLeaveRemainingLoadsToNextRefreshWhenLoaderDefers() {
+        dataset.request("a", "a");
+        dataset.refresh();
+
+        // never loaded, so it comes before a and stops the refresh
+        deferring.add("x");
+        dataset.request("a", "a");
+        dataset.request("x", "x");
+        dataset.refresh();
+
+        DatasetVersion<String> version = dataset.pin();
+        assertEquals("a#1", version.get("a"));
+        assertNull(version.get("x"));
+        version.unpin();
+        assertEquals(1, loads.get());
+        assertEquals(2, dataset.getRefreshDeferrals());
+
+        deferring.clear();
+        dataset.request("a", "a");
+        dataset.request("x", "x");
+        dataset.refresh();
+
+        version = dataset.pin();
+        assertEquals("x#2", version.get("x"));
+        assertEquals("a#3", version.get("a"));
+        version.unpin();
+    }
+
+    @Test
+    public void shouldBoundRequestedQueries() {
+        for (int i = 0; i < 20; i++) {
+            dataset.request("q" + i, "q" + i);
+        }
+        dataset.refresh();
+
+        assertEquals(10, dataset.getVersionEntries());
+    }
+
+    @Test
+    public void shouldDrainRetiredVersionsWithConcurrentReaders() throws Exception {
+        final AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<?>[] readers = new Future<?>[4];
+            for (int i = 0; i < readers.length; i++) {
+                readers[i] = executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (running.get()) {
+                            DatasetVersion<String> version = dataset.pin();
+                            try {
+                                String value = version.get("a");
+                                assertTrue(value == null || value.startsWith("a#"));
+                                dataset.request("a", "a");
+                            } finally {
+                                version.unpin();
+                            }
+                        }
+                    }
+                });
+            }
+
+            for (int i = 0; i < 200; i++) {
+                dataset.refresh();
+            }
+            running.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(200, dataset.getVersion());
+        // only the version replaced by the last refresh is kept
+        assertEquals(1, dataset.getRetiredVersions());
+    }
+
+    @Test
+    public void shouldEstimateBytes() {
+        assertEquals(0, VersionedDataset.estimateBytes(null));
+        assertEquals(46, VersionedDataset.estimateBytes("abc"));
+        assertTrue(VersionedDataset.estimateBytes(Collections.singletonMap("key", Arrays.asList("a", "b")))
+                > VersionedDataset.estimateBytes(Collections.singletonMap("key", Collections.singletonList("a"))));
+    }
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.hedging;
+
+import com.mastercard.ri.atmlocations.admission.AdmissionController;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class UpstreamHedgerTest {
+    private static final String ROUTE = "test";
+
+    private ExecutorService executor;
+
+    @Before
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @After
+    public void cleanup() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldNotHedgeWithoutUpstreamBudget() throws Exception {
+        AdmissionController admissionController = new AdmissionController(0, 0, 1, 1);
+        assertEquals(0, admissionController.tryAcquireUpstream(1));
+        UpstreamHedger hedger = historyOf(new UpstreamHedger(executor, admissionController, true, 95, 1, 100), 5);
+
+        assertEquals("slow", hedger.call(ROUTE, new SlowFirstCall(50)));
+        assertEquals(0, hedger.getHedgesIssued());
+        // the hedge budget is kept for a later hedge
+        assertEquals(1.0, hedger.getHedgeBudget(), 0);
+    }
+
+    @Test
+    public void shouldCallOnCallingThreadWhenExecutorIsBusy() throws Exception {
+        ExecutorService busy = singleThreadExecutor();
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            occupy(busy, release);
+            UpstreamHedger hedger = historyOf(new UpstreamHedger(busy, unlimited(), true, 95, 1, 100), 5);
+            final Thread caller = Thread.currentThread();
+
+            boolean sameThread = hedger.call(ROUTE, new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return Thread.currentThread() == caller;
+                }
+            });
+
+            assertTrue(sameThread);
+            assertEquals(0, hedger.getHedgesIssued());
+        } finally {
+            release.countDown();
+            busy.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldSkipHedgeWhenExecutorIsBusy() throws Exception {
+        ExecutorService busy = singleThreadExecutor();
+        try {
+            AdmissionController admissionController = new AdmissionController(0, 0, 1, 1);
+            UpstreamHedger hedger = historyOf(new UpstreamHedger(busy, admissionController, true, 95, 1, 100), 5);
+
+            // the primary call occupies the only thread
+            assertEquals("slow", hedger.call(ROUTE, new SlowFirstCall(100)));
+            assertEquals(0, hedger.getHedgesIssued());
+            assertEquals(1, hedger.getHedgesRejected());
+
+            // neither budget was spent on the skipped hedge
+            assertEquals(1.0, hedger.getHedgeBudget(), 0);
+            assertEquals(0, admissionController.tryAcquireUpstream(1));
+        } finally {
+            busy.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldCallDirectlyWhenDisabled() throws Exception {
+        UpstreamHedger hedger = new UpstreamHedger(executor, unlimited(), false, 95, 1, 100);
+        final Thread caller = Thread.currentThread();
+
+        boolean sameThread = hedger.call(ROUTE, new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return Thread.currentThread() == caller;
+            }
+        });
+
+        assertTrue(sameThread);
+        assertEquals(0, hedger.getRequests());
+    }
+
+    @Test
+    public void shouldNotHedgeWithoutLatencyHistory() throws Exception {
+        UpstreamHedger hedger = new UpstreamHedger(executor, unlimited(), true, 95, 1, 100);
+
+        assertEquals("slow", hedger.call(ROUTE, new SlowFirstCall(200)));
+        assertEquals(1, hedger.getRequests());
+        assertEquals(0, hedger.getHedgesIssued());
+    }
+
+    @Test
+    public void shouldHedgeSlowCall() throws Exception {
+        UpstreamHedger hedger = historyOf(new UpstreamHedger(executor, unlimited(), true, 95, 1, 100), 5);
+        SlowFirstCall call = new SlowFirstCall(5000);
+
+        long start = System.nanoTime();
+        assertEquals("fast", hedger.call(ROUTE, call));
+
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        assertEquals(1, hedger.getHedgesIssued());
+        assertEquals(1, hedger.getHedgesWon());
+        assertTrue("loser not cancelled", call.interrupted.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shouldNotHedgeFastCall() throws Exception {
+        UpstreamHedger hedger = historyOf(new UpstreamHedger(executor, unlimited(), true, 95, 1, 100), 500);
+
+        assertEquals("fast", hedger.call(ROUTE, new Callable<String>() {
+            @Override
+            public String call() {
+                return "fast";
+            }
+        }));
+        assertEquals(0, hedger.getHedgesIssued());
+    }
+
+    @Test
+    public void shouldCapHedgesByBudget() throws Exception {
+        UpstreamHedger hedger = historyOf(new UpstreamHedger(executor, unlimited(), true, 95, 1, 50), 5);
+
+        for (int i = 0; i < 4; i++) {
+            hedger.call(ROUTE, new SlowFirstCall(50));
+        }
+
+        assertEquals(4, hedger.getRequests());
+        assertEquals(2, hedger.getHedgesIssued());
+    }
+
+    @Test
+    public void shouldFallBackToOtherCallOnFailure() throws Exception {
+        UpstreamHedger hedger = historyOf(new UpstreamHedger(executor, unlimited(), true, 95, 1, 100), 5);
+        final AtomicInteger calls = new AtomicInteger();
+
+        String result = hedger.call(ROUTE, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (calls.getAndIncrement() == 0) {
+                    Thread.sleep(100);
+                    throw new IOException("primary");
+                }
+                Thread.sleep(300);
+                return "hedge";
+            }
+        });
+
+        assertEquals("hedge", result);
+        assertEquals(1, hedger.getHedgesWon());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRethrowFailureWithoutHedge() throws Exception {
+        UpstreamHedger hedger = new UpstreamHedger(executor, unlimited(), true, 95, 1, 100);
+
+        hedger.call(ROUTE, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                throw new IOException();
+            }
+        });
+    }
+
+    @Test
+    public void shouldComputePercentile() {
+        LatencyTracker tracker = new LatencyTracker(95);
+        assertEquals(-1, tracker.getPercentileNanos());
+
+        for (int i = 0; i < 90; i++) {
+            tracker.record(1);
+        }
+        for (int i = 0; i < 6; i++) {
+            tracker.record(100);
+        }
+
+        assertEquals(100, tracker.getPercentileNanos());
+    }
+
+    private static ExecutorService singleThreadExecutor() {
+        return new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static void occupy(ExecutorService executor, final CountDownLatch release) {
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws InterruptedException {
+                release.await();
+                return null;
+            }
+        });
+    }
+
+    private static AdmissionController unlimited() {
+        return new AdmissionController(0, 0, 0, 0);
+    }
+
+    private static UpstreamHedger historyOf(UpstreamHedger hedger, long millis) {
+        for (int i = 0; i < LatencyTracker.MIN_SAMPLES; i++) {
+            hedger.record(ROUTE, TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        return hedger;
+    }
+
+    /**
+     * The first call takes the given time, later calls return immediately.
+     */
+    private static class SlowFirstCall implements Callable<String> {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final CountDownLatch interrupted = new CountDownLatch(1);
+        private final long millis;
+
+        SlowFirstCall(long millis) {
+            this.millis = millis;
+        }
+
+        @Override
+        public String call() {
+            if (calls.getAndIncrement() > 0) {
+                return "fast";
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return "slow";
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.logging;
+
+import org.junit.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AccessLogFilterTest {
+    private final List<String> records = new ArrayList<>();
+    private final AccessLogFilter filter = new AccessLogFilter() {
+        @Override
+        boolean isEnabled() {
+            return true;
+        }
+
+        @Override
+        void log(String method, String uri, int status, long elapsedMicros) {
+            assertTrue(elapsedMicros >= 0);
+            records.add(method + " " + uri + " " + status);
+        }
+    };
+
+    @Test
+    public void shouldLogMethodPathAndStatus() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/atms"), new MockHttpServletResponse(), new MockFilterChain());
+
+        assertEquals("[GET /atms 200]", records.toString());
+    }
+
+    @Test
+    public void shouldLogStatusSetByHandler() throws Exception {
+        filter.doFilter(new MockHttpServletRequest("GET", "/missing"), new MockHttpServletResponse(), new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response) throws IOException {
+                ((HttpServletResponse) response).sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
+        });
+
+        assertEquals("[GET /missing 404]", records.toString());
+    }
+
+    @Test
+    public void shouldLogWhenHandlerFails() throws Exception {
+        try {
+            filter.doFilter(new MockHttpServletRequest("POST", "/atms"), new MockHttpServletResponse(), new FilterChain() {
+                @Override
+                public void doFilter(ServletRequest request, ServletResponse response) {
+                    throw new IllegalStateException();
+                }
+            });
+            fail();
+        } catch (IllegalStateException expected) {
+            // logged regardless
+        }
+
+        assertEquals("[POST /atms 200]", records.toString());
+    }
+
+    @Test
+    public void shouldSkipWhenDisabled() throws Exception {
+        AccessLogFilter disabled = new AccessLogFilter() {
+            @Override
+            boolean isEnabled() {
+                return false;
+            }
+
+            @Override
+            void log(String method, String uri, int status, long elapsedMicros) {
+                fail();
+            }
+        };
+
+        disabled.doFilter(new MockHttpServletRequest("GET", "/atms"), new MockHttpServletResponse(), new MockFilterChain());
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.logging;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class ErrorLogSamplerTest {
+    private ErrorLogSampler sampler;
+    private Logger logger;
+
+    @Before
+    public void setup() {
+        sampler = new ErrorLogSampler(1000);
+        logger = mock(Logger.class);
+    }
+
+    @Test
+    public void shouldLogFirstOccurrence() {
+        assertEquals(0, sample("key", 0));
+    }
+
+    @Test
+    public void shouldSuppressRepeatedOccurrencesWithinWindow() {
+        sample("key", 0);
+
+        assertEquals(-1, sample("key", 10));
+        assertEquals(-1, sample("key", 999));
+    }
+
+    @Test
+    public void shouldReportSuppressedCountWhenWindowElapses() {
+        sample("key", 0);
+        sample("key", 10);
+        sample("key", 20);
+
+        assertEquals(2, sample("key", 1000));
+        assertEquals(-1, sample("key", 1001));
+    }
+
+    @Test
+    public void shouldSampleKeysIndependently() {
+        sample("key1", 0);
+
+        assertEquals(0, sample("key2", 10));
+        assertEquals(-1, sample("key1", 20));
+    }
+
+    @Test
+    public void shouldFlushSuppressedCountWithoutFurtherOccurrence() {
+        sample("key", 0);
+        sample("key", 10);
+        sample("key", 20);
+
+        sampler.flush(500);
+        verifyZeroInteractions(logger);
+
+        sampler.flush(1000);
+        verify(logger).warn("message (2 similar errors suppressed)");
+
+        // the count was reported, so a further occurrence within the new window is suppressed
+        assertEquals(-1, sample("key", 1010));
+    }
+
+    @Test
+    public void shouldForgetKeysNotSeenDuringTheirWindow() {
+        sample("key", 0);
+
+        sampler.flush(1000);
+
+        assertEquals(0, sampler.getTrackedKeys());
+        verifyZeroInteractions(logger);
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlySeenKeyOnly() {
+        sample("old", 0);
+        sample("old", 1);
+        for (int i = 1; i < ErrorLogSampler.MAX_TRACKED_KEYS; i++) {
+            sample("key" + i, 2);
+        }
+        sample("key1", 3);
+
+        sample("new", 4);
+
+        verify(logger).warn("message (1 similar errors suppressed)");
+        assertEquals(ErrorLogSampler.MAX_TRACKED_KEYS, sampler.getTrackedKeys());
+        assertEquals(-1, sample("key1", 5));
+        assertEquals(-1, sample("key2", 5));
+        assertEquals(0, sample("old", 6));
+    }
+
+    @Test
+    public void shouldReportErrorsAtErrorLevel() {
+        sampler.sample("key", 0, logger, "message", true);
+        sampler.sample("key", 10, logger, "message", true);
+
+        sampler.flush(1000);
+
+        verify(logger).error("message (1 similar errors suppressed)");
+        verify(logger, never()).warn("message (1 similar errors suppressed)");
+    }
+
+    private long sample(String key, long now) {
+        return sampler.sample(key, now, logger, "message", false);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.projection;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mastercard.ri.atmlocations.generated.model.Atm;
+import com.mastercard.ri.atmlocations.generated.model.Atms;
+import com.mastercard.ri.atmlocations.generated.model.Location;
+import com.mastercard.ri.atmlocations.generated.model.Point;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class ProjectionCompilerTest {
+    private static final String[] CACHE_FIELDS = {"pageOffset", "totalCount", "atm.camera", "atm.availability", "atm.accessFees",
+            "atm.location.name", "atm.location.distance", "atm.location.distanceUnit", "atm.location.point.latitude"};
+
+    private ProjectionCompiler compiler;
+    private Atms atms;
+
+    @Before
+    public void setup() {
+        compiler = new ProjectionCompiler();
+
+        Point point = new Point();
+        point.setLatitude(40.7);
+        point.setLongitude(-74.0);
+
+        Location location = new Location();
+        location.setName("ATM 1");
+        location.setDistance(1.5);
+        location.setPoint(point);
+
+        Atm atm = new Atm();
+        atm.setCamera(true);
+        atm.setLocation(location);
+
+        atms = new Atms();
+        atms.setPageOffset(0);
+        atms.setTotalCount(1);
+        atms.setAtm(Collections.singletonList(atm));
+    }
+
+    @Test
+    public void shouldApplyProjection() throws Exception {
+        Projection projection = compiler.compile(Atms.class, "totalCount,atm.location.name,atm.location.point");
+
+        assertEquals("{\"totalCount\":1,\"atm\":[{\"location\":{\"name\":\"ATM 1\",\"point\":{\"latitude\":40.7,\"longitude\":-74.0}}}]}",
+                new ObjectMapper().writeValueAsString(projection.apply(atms)));
+    }
+
+    @Test
+    public void shouldReportIncludedPaths() {
+        Projection projection = compiler.compile(Atms.class, "atm.location.name,atm.location.point");
+
+        assertTrue(projection.includes("atm"));
+        assertTrue(projection.includes("atm.location"));
+        assertTrue(projection.includes("atm.location.point"));
+        assertTrue(projection.includes("atm.location.point.latitude"));
+        assertFalse(projection.includes("atm.location.address"));
+        assertFalse(projection.includes("totalCount"));
+    }
+
+    @Test
+    public void shouldIncludeChildrenOfParentField() throws Exception {
+        Projection projection = compiler.compile(Atms.class, "atm.location.point.latitude,atm.location.point");
+
+        assertEquals("{\"atm\":[{\"location\":{\"point\":{\"latitude\":40.7,\"longitude\":-74.0}}}]}",
+                new ObjectMapper().writeValueAsString(projection.apply(atms)));
+    }
+
+    @Test
+    public void shouldCachePerFieldSet() {
+        Projection projection = compiler.compile(Atms.class, "totalCount,atm.camera");
+
+        assertSame(projection, compiler.compile(Atms.class, " atm.camera,totalCount,atm.camera"));
+        assertNotSame(projection, compiler.compile(Atms.class, "totalCount"));
+        assertEquals(2, compiler.getCachedProjections());
+    }
+
+    @Test
+    public void shouldBoundCache() {
+        for (int i = 1; i < 1 << CACHE_FIELDS.length; i++) {
+            compiler.compile(Atms.class, fieldSet(i));
+        }
+
+        assertEquals(ProjectionCompiler.MAX_CACHED_PROJECTIONS, compiler.getCachedProjections());
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedProjection() {
+        Projection recent = compiler.compile(Atms.class, fieldSet(1));
+        Projection eldest = compiler.compile(Atms.class, fieldSet(2));
+        for (int i = 3; i <= ProjectionCompiler.MAX_CACHED_PROJECTIONS; i++) {
+            compiler.compile(Atms.class, fieldSet(i));
+        }
+
+        assertSame(recent, compiler.compile(Atms.class, fieldSet(1)));
+        compiler.compile(Atms.class, fieldSet(ProjectionCompiler.MAX_CACHED_PROJECTIONS + 1));
+
+        assertEquals(ProjectionCompiler.MAX_CACHED_PROJECTIONS, compiler.getCachedProjections());
+        assertSame(recent, compiler.compile(Atms.class, fieldSet(1)));
+        assertNotSame(eldest, compiler.compile(Atms.class, fieldSet(2)));
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void shouldRejectUnknownField() {
+        compiler.compile(Atms.class, "totalCount,atm.location.bogus");
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void shouldRejectNestedFieldOfValue() {
+        compiler.compile(Atms.class, "totalCount.value");
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void shouldRejectEmptyPathSegment() {
+        compiler.compile(Atms.class, "atm..location");
+    }
+
+    @Test(expected = InvalidFieldsException.class)
+    public void shouldRejectNoFields() {
+        compiler.compile(Atms.class, " , ");
+    }
+
+    /**
+     * Returns a distinct field set for every bit pattern of {@link #CACHE_FIELDS}.
+     */
+    private static String fieldSet(int bits) {
+        StringBuilder builder = new StringBuilder();
+        for (int j = 0; j < CACHE_FIELDS.length; j++) {
+            if ((bits & 1 << j) != 0) {
+                builder.append(CACHE_FIELDS[j]).append(',');
+            }
+        }
+        return builder.toString();
+    }
+}
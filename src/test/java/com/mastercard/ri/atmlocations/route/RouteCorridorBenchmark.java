@@ -0,0 +1,110 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.route;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark for corridor searches along long routes. Not run as part of the test suite, run
+ * {@link #main(String[])} with the test classpath.
+ */
+public class RouteCorridorBenchmark {
+    private static final int ROUTE_POINTS = 50000;
+    private static final int CANDIDATES = 100000;
+    private static final int ITERATIONS = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        String polyline = randomRoute(random);
+
+        for (double widthKm : new double[]{0.5, 2, 10}) {
+            long buildNanos = 0;
+            long locateNanos = 0;
+            int centers = 0;
+            int matches = 0;
+            double lengthKm = 0;
+
+            for (int i = 0; i < ITERATIONS; i++) {
+                long start = System.nanoTime();
+                RouteCorridor corridor = RouteCorridor.fromEncodedPolyline(polyline, widthKm);
+                centers = corridor.getQueryCenters().size();
+                buildNanos += System.nanoTime() - start;
+                lengthKm = corridor.getLengthKm();
+
+                Random candidates = new Random(7);
+                matches = 0;
+                start = System.nanoTime();
+                for (int c = 0; c < CANDIDATES; c++) {
+                    if (corridor.locate(40 + candidates.nextDouble() * 5, -100 + candidates.nextDouble() * 10) != null) {
+                        matches++;
+                    }
+                }
+                locateNanos += System.nanoTime() - start;
+            }
+
+            System.out.printf("width=%.1fkm length=%.0fkm points=%d centers=%d build=%dms locate=%dns/candidate matches=%d%n",
+                    widthKm, lengthKm, ROUTE_POINTS, centers,
+                    TimeUnit.NANOSECONDS.toMillis(buildNanos / ITERATIONS),
+                    locateNanos / ITERATIONS / CANDIDATES, matches);
+        }
+    }
+
+    /**
+     * A meandering route of roughly 1500 km heading east, encoded as a Google polyline.
+     */
+    private static String randomRoute(Random random) {
+        StringBuilder encoded = new StringBuilder();
+        int lastLatitude = 0;
+        int lastLongitude = 0;
+        double latitude = 42.5;
+        double longitude = -100;
+
+        for (int i = 0; i < ROUTE_POINTS; i++) {
+            latitude += (random.nextDouble() - 0.5) * 0.0008;
+            longitude += random.nextDouble() * 0.0004;
+
+            int lat = (int) Math.round(latitude * 1e5);
+            int lng = (int) Math.round(longitude * 1e5);
+            encodeValue(lat - lastLatitude, encoded);
+            encodeValue(lng - lastLongitude, encoded);
+            lastLatitude = lat;
+            lastLongitude = lng;
+        }
+        return encoded.toString();
+    }
+
+    private static void encodeValue(int value, StringBuilder encoded) {
+        int v = value < 0 ? ~(value << 1) : value << 1;
+        while (v >= 0x20) {
+            encoded.append((char) ((0x20 | (v & 0x1f)) + 63));
+            v >>= 5;
+        }
+        encoded.append((char) (v + 63));
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2016 MasterCard International.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are
+ * permitted provided that the following conditions are met:
+ *
+ * Redistributions of source code must retain the above copyright notice, this list of
+ * conditions and the following disclaimer.
+ * Redistributions in binary form must reproduce the above copyright notice, this list of
+ * conditions and the following disclaimer in the documentation and/or other materials
+ * provided with the distribution.
+ * Neither the name of the MasterCard International Incorporated nor the names of its
+ * contributors may be used to endorse or promote products derived from this software
+ * without specific prior written permission.
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY
+ * EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES
+ * OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT
+ * SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ * INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED
+ * TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+ * OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER
+ * IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF
+ * SUCH DAMAGE.
+ *
+ */
+
+package com.mastercard.ri.atmlocations.route;
+
+import com.mastercard.ri.atmlocations.generated.model.Point;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RouteCorridorTest {
+    // 0.1 degree of latitude
+    private static final double KM_PER_TENTH_DEGREE = Math.PI * 6371.0088 / 1800;
+    // a leg of one and a half center spacings for a 1 km corridor, which puts the corner between two centers
+    private static final double LEG = 1.5 * 2 * Math.sqrt(2) / (10 * KM_PER_TENTH_DEGREE);
+
+    @Test
+    public void shouldDecodeEncodedPolyline() {
+        double[][] points = RouteCorridor.decodePolyline("_p~iF~ps|U_ulLnnqC_mqNvxq`@");
+
+        assertArrayEquals(new double[]{38.5, 40.7, 43.252}, points[0], 1e-9);
+        assertArrayEquals(new double[]{-120.2, -120.95, -126.453}, points[1], 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidEncodedPolyline() {
+        RouteCorridor.decodePolyline("_p~iF~ps|U_");
+    }
+
+    @Test
+    public void shouldCoverRouteWithSpacedQueryCenters() {
+        // ~11.1 km due north
+        RouteCorridor corridor = new RouteCorridor(new double[]{0, 0.1}, new double[]{0, 0}, 1);
+
+        List<Point> centers = corridor.getQueryCenters();
+
+        assertEquals(KM_PER_TENTH_DEGREE, corridor.getLengthKm(), 1e-6);
+        assertEquals(2.0, corridor.getQueryRadiusKm(), 1e-9);
+        // every 2.83 km plus the end of the route
+        assertEquals(5, centers.size());
+        assertEquals(0.1, centers.get(centers.size() - 1).getLatitude(), 1e-9);
+    }
+
+    @Test
+    public void shouldDropDuplicateQueryCentersWhenRouteDoublesBack() {
+        RouteCorridor oneWay = new RouteCorridor(new double[]{0, 0.1}, new double[]{0, 0}, 1);
+        RouteCorridor roundTrip = new RouteCorridor(new double[]{0, 0.1, 0}, new double[]{0, 0, 0}, 1);
+
+        assertTrue(roundTrip.getQueryCenters().size() < 2 * oneWay.getQueryCenters().size());
+    }
+
+    @Test
+    public void shouldCoverOutsideOfRightAngleTurn() {
+        RouteCorridor corridor = new RouteCorridor(new double[]{0, LEG, LEG}, new double[]{0, 0, LEG}, 1);
+
+        // 1 km beyond the corner, on the outside of the turn
+        double beyond = 1 / Math.sqrt(2) / (10 * KM_PER_TENTH_DEGREE);
+        assertCovered(corridor, LEG + beyond, -beyond);
+        assertCorridorCovered(corridor);
+    }
+
+    @Test
+    public void shouldCoverOutsideOfUTurn() {
+        double gap = 0.5 / (10 * KM_PER_TENTH_DEGREE);
+        RouteCorridor corridor = new RouteCorridor(new double[]{0, LEG, LEG, 0}, new double[]{0, 0, gap, gap}, 1);
+
+        // 1 km beyond the turn
+        assertCovered(corridor, LEG + 1 / (10 * KM_PER_TENTH_DEGREE), gap / 2);
+        assertCorridorCovered(corridor);
+    }
+
+    @Test
+    public void shouldCoverCurvedRoute() {
+        // a half circle of ~5 km radius sampled every 3 degrees
+        int points = 61;
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        for (int i = 0; i < points; i++) {
+            double angle = Math.toRadians(3 * i);
+            latitudes[i] = 0.045 * Math.sin(angle);
+            longitudes[i] = 0.045 * Math.cos(angle);
+        }
+
+        assertCorridorCovered(new RouteCorridor(latitudes, longitudes, 1));
+    }
+
+    @Test
+    public void shouldLocatePointsWithinCorridor() {
+        RouteCorridor corridor = new RouteCorridor(new double[]{0, 0.1, 0.1}, new double[]{0, 0, 0.1}, 1);
+
+        RouteCorridor.Position first = corridor.locate(0.05, 0.005);
+        RouteCorridor.Position second = corridor.locate(0.095, 0.05);
+
+        assertNotNull(first);
+        assertEquals(KM_PER_TENTH_DEGREE / 2, first.getOffsetKm(), 1e-3);
+        assertEquals(KM_PER_TENTH_DEGREE / 20, first.getDistanceKm(), 1e-3);
+        assertNotNull(second);
+        assertTrue(second.getOffsetKm() > first.getOffsetKm());
+    }
+
+    @Test
+    public void shouldNotLocatePointsOutsideCorridor() {
+        RouteCorridor corridor = new RouteCorridor(new double[]{0, 0.1}, new double[]{0, 0}, 1);
+
+        assertNull(corridor.locate(0.05, 0.02));
+        assertNull(corridor.locate(0.2, 0));
+        assertNull(corridor.locate(10, 10));
+    }
+
+    @Test
+    public void shouldSupportSinglePointRoute() {
+        RouteCorridor corridor = new RouteCorridor(new double[]{1}, new double[]{1}, 1);
+
+        assertEquals(1, corridor.getQueryCenters().size());
+        assertNotNull(corridor.locate(1.001, 1.001));
+    }
+
+    private static void assertCovered(RouteCorridor corridor, double latitude, double longitude) {
+        assertNotNull("outside the corridor", corridor.locate(latitude, longitude));
+        assertTrue("not covered: " + latitude + "," + longitude,
+                distanceToNearestCenterKm(corridor, latitude, longitude) <= corridor.getQueryRadiusKm());
+    }
+
+    /**
+     * Checks a grid of points over the corridor at the equator, spaced 1/10 of the corridor width.
+     */
+    private static void assertCorridorCovered(RouteCorridor corridor) {
+        double step = corridor.getWidthKm() / 10 / (10 * KM_PER_TENTH_DEGREE);
+        for (double latitude = -0.1; latitude <= 0.1; latitude += step) {
+            for (double longitude = -0.1; longitude <= 0.1; longitude += step) {
+                if (corridor.locate(latitude, longitude) != null) {
+                    assertCovered(corridor, latitude, longitude);
+                }
+            }
+        }
+    }
+
+    private static double distanceToNearestCenterKm(RouteCorridor corridor, double latitude, double longitude) {
+        double nearest = Double.MAX_VALUE;
+        for (Point center : corridor.getQueryCenters()) {
+            double dx = (center.getLongitude() - longitude) * Math.cos(Math.toRadians(latitude));
+            double dy = center.getLatitude() - latitude;
+            nearest = Math.min(nearest, Math.sqrt(dx * dx + dy * dy) * 10 * KM_PER_TENTH_DEGREE);
+        }
+        return nearest;
+    }
+}